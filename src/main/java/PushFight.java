@@ -3,6 +3,7 @@ package main.java;
 import main.java.evaluation.BranchingAnalysis;
 import main.java.evaluation.ComparePrevious;
 import main.java.evaluation.Evaluation;
+import main.java.evaluation.Perft;
 import main.java.game.GUIGame;
 import main.java.game.TextGame;
 import main.java.genetics.Evolution;
@@ -35,6 +36,13 @@ public class PushFight {
                         case "analyze":
                                 new BranchingAnalysis();
                                 break;
+                        case "perft":
+                                new Perft();
+                                break;
+                        case "perftcheck":
+                                if (!Perft.check())
+                                        System.exit(1);
+                                break;
                 }
         }
 }
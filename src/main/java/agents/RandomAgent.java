@@ -2,6 +2,7 @@ package main.java.agents;
 
 import java.util.Set;
 import java.util.Random;
+import java.util.SplittableRandom;
 
 import main.java.board.Bitboard;
 import main.java.board.Move;
@@ -51,7 +52,7 @@ public class RandomAgent extends Agent implements AgentInterface {
         for (State state : nextStates) {
             if (idx == chosenIdx) {
                 board.restoreState(state.board);
-                return state.move;
+                return state.getMove();
             }
             idx++;
         }
@@ -82,6 +83,44 @@ public class RandomAgent extends Agent implements AgentInterface {
         }
     }
 
+    /**
+     * Generate a random Move from the given board without enumerating every next state. Every next
+     * state is equally likely, as with getRandomMove(Bitboard, Random). The provided board is
+     * updated to have the move performed on it.
+     * 
+     * @param board Board to find next State from
+     * @param rand  Instance of the SplittableRandom class
+     * @return Move object of the randomly chosen next move
+     */
+    public static Move getRandomMove(Bitboard board, SplittableRandom rand) {
+        int move = SuccessorUtils.sampleMove(board, rand, true);
+        Move.apply(move, board);
+        return new Move(move);
+    }
+
+    /**
+     * Perform a random move on the given board without enumerating every next state. Every next
+     * state is equally likely, as with randomMove(Bitboard, Random).
+     * 
+     * @param board Board to perform random move on
+     * @param rand  Instance of the SplittableRandom class
+     */
+    public static void randomMove(Bitboard board, SplittableRandom rand) {
+        randomMove(board, rand, true);
+    }
+
+    /**
+     * Perform a random move on the given board without enumerating every next state.
+     * 
+     * @param board Board to perform random move on
+     * @param rand  Instance of the SplittableRandom class
+     * @param exact Whether every next state should be equally likely. If false, the move is found
+     *              much faster but is biased towards some next states (see TurnSampler)
+     */
+    public static void randomMove(Bitboard board, SplittableRandom rand, boolean exact) {
+        Move.apply(SuccessorUtils.sampleMove(board, rand, exact), board);
+    }
+
     @Override
     public String toString() {
         return "Random Agent";
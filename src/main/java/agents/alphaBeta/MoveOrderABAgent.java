@@ -4,13 +4,16 @@ import main.java.agents.Agent;
 import main.java.agents.AgentInterface;
 import main.java.board.Bitboard;
 import main.java.board.Heuristic;
+import main.java.board.IncrementalEvaluation;
 import main.java.board.State;
 import main.java.util.BitboardUtils;
 import main.java.util.SuccessorUtils;
 
 /**
  * Agent using the Minimax algorithm with Alpha Beta Pruning. Considers moves from separate groups
- * to add a rough move ordering that should increase pruning.
+ * to add a rough move ordering that should increase pruning. Unlike VanillaABAgent, every next
+ * state is generated and grouped up front (see StateSet), so the whole turn's winning states come
+ * first, then checkmates, then states off the border, then the rest.
  */
 public class MoveOrderABAgent extends Agent implements AgentInterface {
     /**
@@ -28,6 +31,8 @@ public class MoveOrderABAgent extends Agent implements AgentInterface {
 
     private Heuristic[] heuristics = {new Heuristic(), new Heuristic()};
     private Heuristic h;
+    // positional terms of the heuristic, kept up to date along the search path
+    private IncrementalEvaluation evaluation;
     private int DEPTH = 2;
     public int explored = 0;
     private boolean silent = true;
@@ -88,6 +93,7 @@ public class MoveOrderABAgent extends Agent implements AgentInterface {
 
     public void newGame(int turn) {
         h = heuristics[turn];
+        evaluation = new IncrementalEvaluation(h);
     }
 
     public Bitboard getNextState(Bitboard board) {
@@ -95,7 +101,13 @@ public class MoveOrderABAgent extends Agent implements AgentInterface {
         if (!silent)
             System.out.print("Alpha Beta searching for a move for player " + (turn + 1) + "... ");
 
+        // take a win if there is one, no need to search
+        Bitboard win = SuccessorUtils.getWinningState(board);
+        if (win != null)
+            return win;
+
         // explored = 0;
+        evaluation.reset(board);
         AlphaReturn r = alphaBeta(board, DEPTH, -Double.MAX_VALUE, Double.MAX_VALUE, turn);
 
         if (!silent)
@@ -117,8 +129,10 @@ public class MoveOrderABAgent extends Agent implements AgentInterface {
     private AlphaReturn alphaBeta(Bitboard board, int depth, double alpha, double beta, int turn) {
         explored++;
         if (depth == 0 || BitboardUtils.checkWinner(board) != -1) {
-            return new AlphaReturn(h.heuristic(board), null);
+            return new AlphaReturn(evaluation.evaluate(board, alpha, beta), null);
         }
+        if (SearchUtils.isWin(board, depth, DEPTH))
+            return new AlphaReturn(SearchUtils.winValue(turn), null);
 
         AlphaReturn best = new AlphaReturn(0, null);
         double candidateValue;
@@ -127,7 +141,9 @@ public class MoveOrderABAgent extends Agent implements AgentInterface {
             best.value = -Double.MAX_VALUE;
             for (State state : SuccessorUtils.getStateSet(board)) {
                 child = state.board;
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue > best.value) {
                     best.value = candidateValue;
@@ -143,7 +159,9 @@ public class MoveOrderABAgent extends Agent implements AgentInterface {
             best.value = Double.MAX_VALUE;
             for (State state : SuccessorUtils.getStateSet(board)) {
                 child = state.board;
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue < best.value) {
                     best.value = candidateValue;
@@ -4,7 +4,7 @@ import main.java.agents.Agent;
 import main.java.agents.AgentInterface;
 import main.java.board.Bitboard;
 import main.java.board.Heuristic;
-import main.java.board.State;
+import main.java.board.IncrementalEvaluation;
 import main.java.util.BitboardUtils;
 import main.java.util.SuccessorUtils;
 
@@ -29,6 +29,8 @@ public class ScoutAgent extends Agent implements AgentInterface {
     private static double NULL_WINDOW = Math.pow(10, -10);
     private Heuristic[] heuristics = {new Heuristic(), new Heuristic()};
     private Heuristic h;
+    // positional terms of the heuristic, kept up to date along the search path
+    private IncrementalEvaluation evaluation;
     private int DEPTH = 2;
     public int explored = 0;
     private boolean silent = true;
@@ -89,6 +91,7 @@ public class ScoutAgent extends Agent implements AgentInterface {
 
     public void newGame(int turn) {
         h = heuristics[turn];
+        evaluation = new IncrementalEvaluation(h);
     }
 
     public Bitboard getNextState(Bitboard board) {
@@ -96,7 +99,13 @@ public class ScoutAgent extends Agent implements AgentInterface {
         if (!silent)
             System.out.print("Alpha Beta searching for a move for player " + (turn + 1) + "... ");
 
+        // take a win if there is one, no need to search
+        Bitboard win = SuccessorUtils.getWinningState(board);
+        if (win != null)
+            return win;
+
         // explored = 0;
+        evaluation.reset(board);
         AlphaReturn r = scout(board, DEPTH, -Double.MAX_VALUE, Double.MAX_VALUE, turn);
 
         if (!silent)
@@ -120,17 +129,18 @@ public class ScoutAgent extends Agent implements AgentInterface {
     private AlphaReturn scout(Bitboard board, int depth, double alpha, double beta, int turn) {
         explored++;
         if (depth == 0 || BitboardUtils.checkWinner(board) != -1) {
-            return new AlphaReturn(h.heuristic(board), null);
+            return new AlphaReturn(evaluation.evaluate(board, alpha, beta), null);
         }
+        if (SearchUtils.isWin(board, depth, DEPTH))
+            return new AlphaReturn(SearchUtils.winValue(turn), null);
 
         AlphaReturn best = new AlphaReturn(0, null);
         double candidateValue;
-        Bitboard child;
         boolean first = true;
         if (turn == 0) {
             best.value = -Double.MAX_VALUE;
-            for (State state : SuccessorUtils.getStateSet(board)) {
-                child = state.board;
+            for (Bitboard child : SuccessorUtils.iterateNextStates(board, DEPTH - depth)) {
+                evaluation.push(child);
                 if (first) {
                     first = false;
                     candidateValue = scout(child, depth - 1, alpha, beta, 1 - turn).value;
@@ -142,6 +152,7 @@ public class ScoutAgent extends Agent implements AgentInterface {
                                 scout(child, depth - 1, candidateValue, beta, 1 - turn).value;
                     }
                 }
+                evaluation.pop();
 
                 if (candidateValue > best.value) {
                     best.value = candidateValue;
@@ -155,8 +166,8 @@ public class ScoutAgent extends Agent implements AgentInterface {
             return best;
         } else {
             best.value = Double.MAX_VALUE;
-            for (State state : SuccessorUtils.getStateSet(board)) {
-                child = state.board;
+            for (Bitboard child : SuccessorUtils.iterateNextStates(board, DEPTH - depth)) {
+                evaluation.push(child);
                 if (first) {
                     first = false;
                     candidateValue = scout(child, depth - 1, alpha, beta, 1 - turn).value;
@@ -168,6 +179,7 @@ public class ScoutAgent extends Agent implements AgentInterface {
                                 scout(child, depth - 1, alpha, candidateValue, 1 - turn).value;
                     }
                 }
+                evaluation.pop();
 
                 if (candidateValue < best.value) {
                     best.value = candidateValue;
@@ -195,17 +207,19 @@ public class ScoutAgent extends Agent implements AgentInterface {
     private AlphaReturn alphaBeta(Bitboard board, int depth, double alpha, double beta, int turn) {
         explored++;
         if (depth == 0 || BitboardUtils.checkWinner(board) != -1) {
-            return new AlphaReturn(h.heuristic(board), null);
+            return new AlphaReturn(evaluation.evaluate(board, alpha, beta), null);
         }
+        if (SearchUtils.isWin(board, depth, DEPTH))
+            return new AlphaReturn(SearchUtils.winValue(turn), null);
 
         AlphaReturn best = new AlphaReturn(0, null);
         double candidateValue;
-        Bitboard child;
         if (turn == 0) {
             best.value = -Double.MAX_VALUE;
-            for (State state : SuccessorUtils.getStateSet(board)) {
-                child = state.board;
+            for (Bitboard child : SuccessorUtils.iterateNextStates(board, DEPTH - depth)) {
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue > best.value) {
                     best.value = candidateValue;
@@ -219,9 +233,10 @@ public class ScoutAgent extends Agent implements AgentInterface {
             return best;
         } else {
             best.value = Double.MAX_VALUE;
-            for (State state : SuccessorUtils.getStateSet(board)) {
-                child = state.board;
+            for (Bitboard child : SuccessorUtils.iterateNextStates(board, DEPTH - depth)) {
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue < best.value) {
                     best.value = candidateValue;
@@ -0,0 +1,35 @@
+package main.java.agents.alphaBeta;
+
+import main.java.board.Bitboard;
+import main.java.board.Heuristic;
+import main.java.util.SuccessorUtils;
+
+/**
+ * Helpers shared by the alpha beta searches
+ */
+class SearchUtils {
+    /**
+     * Check whether a node of the search can be given the win value without searching its subtree,
+     * because the player to move can win this turn. Only nodes strictly between the root and depth
+     * 1 are checked: at depth 1 evaluating the children is cheaper than checking, and the root
+     * takes the win itself. So this only takes effect when searching to depth 3 or more
+     * 
+     * @param board    Board at the node
+     * @param depth    Depth remaining at the node
+     * @param maxDepth Depth the search started from
+     * @return true if the node is a win for the player to move
+     */
+    static boolean isWin(Bitboard board, int depth, int maxDepth) {
+        return depth > 1 && depth < maxDepth && SuccessorUtils.canWin(board);
+    }
+
+    /**
+     * Get the value of a win for the given player
+     * 
+     * @param turn Turn indicator of the winner
+     * @return Heuristic.WIN_VALUE for p1, its negation for p2
+     */
+    static double winValue(int turn) {
+        return turn == 0 ? Heuristic.WIN_VALUE : -Heuristic.WIN_VALUE;
+    }
+}
@@ -9,6 +9,7 @@ import main.java.agents.Agent;
 import main.java.agents.AgentInterface;
 import main.java.board.Bitboard;
 import main.java.board.Heuristic;
+import main.java.board.IncrementalEvaluation;
 import main.java.util.BitboardUtils;
 import main.java.util.SuccessorUtils;
 
@@ -63,6 +64,7 @@ public class StochasticABAgent extends Agent implements AgentInterface {
     };
 
     private Heuristic h; // heuristic used for board evaluation
+    private IncrementalEvaluation evaluation; // positional terms along the search path
     private int DEPTH = 2; // depth to perform minimax search to
     private double PT = 10; // pruning threshold
     private Random rand = new Random(); // Random object for stochasticity
@@ -73,11 +75,13 @@ public class StochasticABAgent extends Agent implements AgentInterface {
      */
     public StochasticABAgent() {
         h = new Heuristic();
+        evaluation = new IncrementalEvaluation(h);
     }
 
     public Bitboard getNextState(Bitboard board) {
         int turn = board.getTurn();
         options.clear();
+        evaluation.reset(board);
         alphaBeta(board, DEPTH, -Double.MAX_VALUE, Double.MAX_VALUE, turn);
         if (options.size() == 0) {
             System.out.println("Error, no options");
@@ -160,7 +164,7 @@ public class StochasticABAgent extends Agent implements AgentInterface {
      */
     private AlphaReturn alphaBeta(Bitboard board, int depth, double alpha, double beta, int turn) {
         if (depth == 0 || BitboardUtils.checkWinner(board) != -1) {
-            return new AlphaReturn(h.heuristic(board), board);
+            return new AlphaReturn(evaluation.evaluate(board), board);
         }
 
         AlphaReturn best = new AlphaReturn(0, null);
@@ -169,7 +173,9 @@ public class StochasticABAgent extends Agent implements AgentInterface {
         if (turn == 0) {
             best.value = -Double.MAX_VALUE;
             for (Bitboard child : SuccessorUtils.getNextStates(board)) {
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue > best.value) {
                     best.value = candidateValue;
@@ -190,7 +196,9 @@ public class StochasticABAgent extends Agent implements AgentInterface {
         } else {
             best.value = Double.MAX_VALUE;
             for (Bitboard child : SuccessorUtils.getNextStates(board)) {
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue < best.value) {
                     best.value = candidateValue;
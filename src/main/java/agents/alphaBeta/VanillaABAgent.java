@@ -4,11 +4,14 @@ import main.java.agents.Agent;
 import main.java.agents.AgentInterface;
 import main.java.board.Bitboard;
 import main.java.board.Heuristic;
+import main.java.board.IncrementalEvaluation;
 import main.java.util.BitboardUtils;
 import main.java.util.SuccessorUtils;
 
 /**
- * Agent using the Minimax algorithm with vanilla Alpha Beta Pruning.
+ * Agent using the Minimax algorithm with vanilla Alpha Beta Pruning. Next states are generated
+ * lazily (see SuccessorIterator), so the only move ordering is the iterator's: at each set of
+ * slides, winning pushes come before checkmates, then pushes off the border, then the rest.
  */
 public class VanillaABAgent extends Agent implements AgentInterface {
     /**
@@ -26,6 +29,8 @@ public class VanillaABAgent extends Agent implements AgentInterface {
 
     private Heuristic[] heuristics = {new Heuristic(), new Heuristic()};
     private Heuristic h;
+    // positional terms of the heuristic, kept up to date along the search path
+    private IncrementalEvaluation evaluation;
     private int DEPTH = 2;
     public int explored = 0;
     private boolean silent = true;
@@ -86,6 +91,7 @@ public class VanillaABAgent extends Agent implements AgentInterface {
 
     public void newGame(int turn) {
         h = heuristics[turn];
+        evaluation = new IncrementalEvaluation(h);
     }
 
     public Bitboard getNextState(Bitboard board) {
@@ -93,7 +99,13 @@ public class VanillaABAgent extends Agent implements AgentInterface {
         if (!silent)
             System.out.print("Alpha Beta searching for a move for player " + (turn + 1) + "... ");
 
+        // take a win if there is one, no need to search
+        Bitboard win = SuccessorUtils.getWinningState(board);
+        if (win != null)
+            return win;
+
         // explored = 0;
+        evaluation.reset(board);
         AlphaReturn r = alphaBeta(board, DEPTH, -Double.MAX_VALUE, Double.MAX_VALUE, turn);
 
         if (!silent)
@@ -115,15 +127,19 @@ public class VanillaABAgent extends Agent implements AgentInterface {
     private AlphaReturn alphaBeta(Bitboard board, int depth, double alpha, double beta, int turn) {
         explored++;
         if (depth == 0 || BitboardUtils.checkWinner(board) != -1) {
-            return new AlphaReturn(h.heuristic(board), null);
+            return new AlphaReturn(evaluation.evaluate(board, alpha, beta), null);
         }
+        if (SearchUtils.isWin(board, depth, DEPTH))
+            return new AlphaReturn(SearchUtils.winValue(turn), null);
 
         AlphaReturn best = new AlphaReturn(0, null);
         double candidateValue;
         if (turn == 0) {
             best.value = -Double.MAX_VALUE;
-            for (Bitboard child : SuccessorUtils.getNextStates(board)) {
+            for (Bitboard child : SuccessorUtils.iterateNextStates(board, DEPTH - depth)) {
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue > best.value) {
                     best.value = candidateValue;
@@ -137,8 +153,10 @@ public class VanillaABAgent extends Agent implements AgentInterface {
             return best;
         } else {
             best.value = Double.MAX_VALUE;
-            for (Bitboard child : SuccessorUtils.getNextStates(board)) {
+            for (Bitboard child : SuccessorUtils.iterateNextStates(board, DEPTH - depth)) {
+                evaluation.push(child);
                 candidateValue = alphaBeta(child, depth - 1, alpha, beta, 1 - turn).value;
+                evaluation.pop();
 
                 if (candidateValue < best.value) {
                     best.value = candidateValue;
@@ -1,10 +1,9 @@
 package main.java.agents.mcts;
 
 import main.java.board.Bitboard;
-import main.java.board.State;
 import main.java.board.StateSet;
 import main.java.util.BitboardUtils;
-import main.java.util.SetUtils;
+import main.java.util.RepetitionTracker;
 import main.java.util.SuccessorUtils;
 
 /**
@@ -31,7 +30,7 @@ public class BiasedMCTSAgent extends VanillaMCTSAgent {
 
     @Override
     protected double playout(Node node) {
-        boardToNum.clear();
+        repetitions.clear();
         Bitboard board = new Bitboard(node.state.board);
         StateSet stateSet;
         int winner, count;
@@ -45,32 +44,45 @@ public class BiasedMCTSAgent extends VanillaMCTSAgent {
             }
 
             // add tie logic in rare case of long loop
-            count = boardToNum.getOrDefault(board, 0);
-            boardToNum.put(board, count + 1);
+            count = repetitions.add(board);
             turnCount += 1;
-            if (count >= 5 || turnCount >= 100) {
+            if (count >= RepetitionTracker.TIE_REPEATS || turnCount >= 100) {
                 return 0;
             }
 
+            // a player who can win this turn always does, so skip generating the states
+            if (SuccessorUtils.canWin(board))
+                return board.getTurn() == 0 ? 1 : -1;
+
             stateSet = SuccessorUtils.getStateSet(board);
-            if (stateSet.winningStates.size() > 0) {
-                board.restoreState(stateSet.iterator().next().board);
-            } else if (stateSet.checkmateStates.size() > 0) {
-                board.restoreState(stateSet.iterator().next().board);
-            } else if (stateSet.noBorderStates.size() > 0) {
+            if (stateSet.size(StateSet.WINNING) > 0) {
+                stateSet.loadBoard(StateSet.WINNING, 0, board);
+            } else if (stateSet.size(StateSet.CHECKMATE) > 0) {
+                stateSet.loadBoard(StateSet.CHECKMATE, 0, board);
+            } else if (stateSet.size(StateSet.NO_BORDER) > 0) {
                 // choose a no-border state 70% of the time
-                if (rand.nextDouble() < 0.7) {
-                    board.restoreState(
-                            ((State) SetUtils.randomChoice(stateSet.noBorderStates)).board);
+                if (rand.nextDouble() < 0.7 || stateSet.size(StateSet.OTHER) == 0) {
+                    randomState(stateSet, StateSet.NO_BORDER, board);
                 } else {
-                    board.restoreState(((State) SetUtils.randomChoice(stateSet.otherStates)).board);
+                    randomState(stateSet, StateSet.OTHER, board);
                 }
             } else {
-                board.restoreState(((State) SetUtils.randomChoice(stateSet.otherStates)).board);
+                randomState(stateSet, StateSet.OTHER, board);
             }
         }
     }
 
+    /**
+     * Set the board to a random state from one category of a StateSet
+     * 
+     * @param stateSet StateSet to choose from
+     * @param category Category to choose from (see StateSet)
+     * @param board    Bitboard to set
+     */
+    private void randomState(StateSet stateSet, int category, Bitboard board) {
+        stateSet.loadBoard(category, rand.nextInt(stateSet.size(category)), board);
+    }
+
     @Override
     public String toString() {
         return "Biased MCTS Agent";
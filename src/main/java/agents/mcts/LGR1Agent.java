@@ -9,6 +9,7 @@ import main.java.agents.RandomAgent;
 import main.java.board.Bitboard;
 import main.java.board.Move;
 import main.java.util.BitboardUtils;
+import main.java.util.RepetitionTracker;
 
 /**
  * Agent using Monte-Carlo Tree Search along with the Last Good Reply enhancement to the default
@@ -49,7 +50,7 @@ public class LGR1Agent extends VanillaMCTSAgent {
         moves.add(new ArrayList<>());
         moves.add(new ArrayList<>());
 
-        boardToNum.clear();
+        repetitions.clear();
         Bitboard board = new Bitboard(node.state.board);
         int winner, count;
         int turnCount = 0;
@@ -67,10 +68,9 @@ public class LGR1Agent extends VanillaMCTSAgent {
             }
 
             // add tie logic in rare case of long loop
-            count = boardToNum.getOrDefault(board, 0);
-            boardToNum.put(board, count + 1);
+            count = repetitions.add(board);
             turnCount += 1;
-            if (count >= 5 || turnCount >= 100) {
+            if (count >= RepetitionTracker.TIE_REPEATS || turnCount >= 100) {
                 return 0;
             }
 
@@ -12,6 +12,7 @@ import main.java.board.Bitboard;
 import main.java.board.Move;
 import main.java.board.State;
 import main.java.util.BitboardUtils;
+import main.java.util.RepetitionTracker;
 import main.java.util.SuccessorUtils;
 
 /**
@@ -77,8 +78,8 @@ public class MASTAgent extends VanillaMCTSAgent {
         // follow UCT until you find a non-fully-expanded node
         while (node.isFullyExpanded && !node.isTerminal) {
             nextNode = bestUCT(node);
-            nextNode.state.move.turn = node.state.board.getTurn();
-            path.add(nextNode.state.move);
+            nextNode.state.getMove().turn = node.state.board.getTurn();
+            path.add(nextNode.state.getMove());
             nextNode.chosenParent = node;
             node = nextNode;
         }
@@ -92,8 +93,8 @@ public class MASTAgent extends VanillaMCTSAgent {
         node.isFullyExpanded = node.unexplored.size() == 0;
 
         // add node's move to the path
-        state.move.turn = node.state.board.getTurn();
-        path.add(state.move);
+        state.getMove().turn = node.state.board.getTurn();
+        path.add(state.getMove());
 
         // add child to node's children and initialize new edge Stats
         node.children.add(nextNode);
@@ -114,6 +115,7 @@ public class MASTAgent extends VanillaMCTSAgent {
      * @return Result of playout (1 if p1 win, -1 if p2 win)
      */
     private int playout(Node node, List<Move> path) {
+        repetitions.clear();
         Bitboard board = node.state.board;
         int winner, count;
         int turnCount = 0;
@@ -124,7 +126,6 @@ public class MASTAgent extends VanillaMCTSAgent {
         State choice = null;
         Iterator<State> iter;
         boolean found;
-        Map<Bitboard, Integer> boardToNum = new HashMap<>();
         int turn;
         while (true) {
             turn = board.getTurn();
@@ -136,10 +137,9 @@ public class MASTAgent extends VanillaMCTSAgent {
             }
 
             // add tie logic in rare case of long loop
-            count = boardToNum.getOrDefault(board, 0);
-            boardToNum.put(board, count + 1);
+            count = repetitions.add(board);
             turnCount += 1;
-            if (count >= 5 || turnCount >= 100) {
+            if (count >= RepetitionTracker.TIE_REPEATS || turnCount >= 100) {
                 return 0;
             }
 
@@ -149,17 +149,17 @@ public class MASTAgent extends VanillaMCTSAgent {
             found = false;
             int sign = turn == 0 ? 1 : -1;
             for (State state : nextStates) {
-                if (moveMap.get(turn).containsKey(state.move)) {
-                    stats = moveMap.get(turn).get(state.move);
+                if (moveMap.get(turn).containsKey(state.getMove())) {
+                    stats = moveMap.get(turn).get(state.getMove());
                     value = Math.exp(sign * stats.totalReward / stats.numPlays / TAU);
                     totalValue += value;
-                    qMap.put(state.move, value);
+                    qMap.put(state.getMove(), value);
                 } else {
                     // always choose an unexplored move
                     board = state.board;
                     found = true;
-                    state.move.turn = turn;
-                    path.add(state.move);
+                    state.getMove().turn = turn;
+                    path.add(state.getMove());
                     break;
                 }
             }
@@ -173,11 +173,11 @@ public class MASTAgent extends VanillaMCTSAgent {
             iter = nextStates.iterator();
             while (iter.hasNext() && value <= randChoice) {
                 choice = iter.next();
-                value += qMap.get(choice.move);
+                value += qMap.get(choice.getMove());
             }
             board = choice.board;
-            choice.move.turn = turn;
-            path.add(choice.move);
+            choice.getMove().turn = turn;
+            path.add(choice.getMove());
         }
     }
 
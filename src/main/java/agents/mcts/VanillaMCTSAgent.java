@@ -1,10 +1,8 @@
 package main.java.agents.mcts;
 
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Random;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import main.java.agents.Agent;
 import main.java.agents.AgentInterface;
@@ -12,6 +10,7 @@ import main.java.agents.RandomAgent;
 import main.java.board.Bitboard;
 import main.java.board.State;
 import main.java.util.BitboardUtils;
+import main.java.util.RepetitionTracker;
 // import main.java.util.SuccessorUtils;
 
 /**
@@ -20,9 +19,9 @@ import main.java.util.BitboardUtils;
  * Adapted from my own homework from CPSC 474.
  */
 public class VanillaMCTSAgent extends Agent implements AgentInterface {
-    protected Map<Bitboard, Integer> boardToNum = new HashMap<>(); // facilitate tie checking
+    protected RepetitionTracker repetitions = new RepetitionTracker(); // facilitate tie checking
     private long iterations = 5000; // iterations allowed to explore game tree
-    protected Random rand = new Random();; // Random object used for random playouts
+    protected SplittableRandom rand = new SplittableRandom(); // used for random playouts
 
     /**
      * Initialize Monte-Carlo Tree Search agent with given iteration limit
@@ -109,7 +108,7 @@ public class VanillaMCTSAgent extends Agent implements AgentInterface {
      * @return Result of playout (1 if p1 win, -1 if p2 win)
      */
     protected double playout(Node node) {
-        boardToNum.clear();
+        repetitions.clear();
         Bitboard board = new Bitboard(node.state.board);
         int winner, count;
         int turnCount = 0;
@@ -122,10 +121,9 @@ public class VanillaMCTSAgent extends Agent implements AgentInterface {
             }
 
             // add tie logic in rare case of long loop
-            count = boardToNum.getOrDefault(board, 0);
-            boardToNum.put(board, count + 1);
+            count = repetitions.add(board);
             turnCount += 1;
-            if (count >= 5 || turnCount >= 100) {
+            if (count >= RepetitionTracker.TIE_REPEATS || turnCount >= 100) {
                 return 0;
             }
 
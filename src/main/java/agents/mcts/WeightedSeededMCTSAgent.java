@@ -4,6 +4,7 @@ import main.java.agents.RandomAgent;
 import main.java.board.Bitboard;
 import main.java.board.Heuristic;
 import main.java.util.BitboardUtils;
+import main.java.util.RepetitionTracker;
 
 /**
  * Agent using Monte-Carlo Tree Search that weights a (normalized) heuristic on board states in
@@ -46,7 +47,7 @@ public class WeightedSeededMCTSAgent extends VanillaMCTSAgent {
     @Override
     protected double playout(Node node) {
         double heuristic = h.heuristic(node.state.board) * heuristicWeight;
-        boardToNum.clear();
+        repetitions.clear();
         Bitboard board = new Bitboard(node.state.board);
         int winner, count;
         int turnCount = 0;
@@ -59,10 +60,9 @@ public class WeightedSeededMCTSAgent extends VanillaMCTSAgent {
             }
 
             // add tie logic in rare case of long loop
-            count = boardToNum.getOrDefault(board, 0);
-            boardToNum.put(board, count + 1);
+            count = repetitions.add(board);
             turnCount += 1;
-            if (count >= 5 || turnCount >= 100) {
+            if (count >= RepetitionTracker.TIE_REPEATS || turnCount >= 100) {
                 // default to returning heuristic value if tie
                 return heuristic / heuristicWeight;
             }
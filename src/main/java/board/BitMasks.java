@@ -1,11 +1,5 @@
 package main.java.board;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 /**
  * Statically defined bit masks to facilitate play using bitboards
  */
@@ -43,75 +37,191 @@ public class BitMasks {
     public static int edges = setBits(new int[] {2, 6, 8, 9, 15, 16, 22, 23, 25, 29});
 
     /**
-     * Orthogonally connected squares to the given bit mask. Ignores invalid positions
+     * Orthogonally connected squares to each position, indexed by position [0, 31]. Ignores invalid
+     * positions, and invalid positions have no neighbours
      */
-    public static Map<Integer, Integer> orthogonal = new HashMap<>();
+    public static final int[] neighbours = new int[32];
     static {
-        orthogonal.put((1 << 2), setBits(new int[] {3, 10}));
-        orthogonal.put((1 << 3), setBits(new int[] {2, 4, 11}));
-        orthogonal.put((1 << 4), setBits(new int[] {3, 5, 12}));
-        orthogonal.put((1 << 5), setBits(new int[] {4, 6, 13}));
-        orthogonal.put((1 << 6), setBits(new int[] {5, 14}));
-        orthogonal.put((1 << 8), setBits(new int[] {9, 16}));
-        orthogonal.put((1 << 9), setBits(new int[] {8, 10, 17}));
-        orthogonal.put((1 << 10), setBits(new int[] {2, 9, 11, 18}));
-        orthogonal.put((1 << 11), setBits(new int[] {3, 10, 12, 19}));
-        orthogonal.put((1 << 12), setBits(new int[] {4, 11, 13, 20}));
-        orthogonal.put((1 << 13), setBits(new int[] {5, 12, 14, 21}));
-        orthogonal.put((1 << 14), setBits(new int[] {6, 13, 15, 22}));
-        orthogonal.put((1 << 15), setBits(new int[] {14, 23}));
-        orthogonal.put((1 << 16), setBits(new int[] {8, 17}));
-        orthogonal.put((1 << 17), setBits(new int[] {9, 16, 18, 25}));
-        orthogonal.put((1 << 18), setBits(new int[] {10, 17, 19, 26}));
-        orthogonal.put((1 << 19), setBits(new int[] {11, 18, 20, 27}));
-        orthogonal.put((1 << 20), setBits(new int[] {12, 19, 21, 28}));
-        orthogonal.put((1 << 21), setBits(new int[] {13, 20, 22, 29}));
-        orthogonal.put((1 << 22), setBits(new int[] {14, 21, 23}));
-        orthogonal.put((1 << 23), setBits(new int[] {15, 22}));
-        orthogonal.put((1 << 25), setBits(new int[] {17, 26}));
-        orthogonal.put((1 << 26), setBits(new int[] {18, 25, 27}));
-        orthogonal.put((1 << 27), setBits(new int[] {19, 26, 28}));
-        orthogonal.put((1 << 28), setBits(new int[] {20, 27, 29}));
-        orthogonal.put((1 << 29), setBits(new int[] {21, 28}));
+        neighbours[2] = setBits(new int[] {3, 10});
+        neighbours[3] = setBits(new int[] {2, 4, 11});
+        neighbours[4] = setBits(new int[] {3, 5, 12});
+        neighbours[5] = setBits(new int[] {4, 6, 13});
+        neighbours[6] = setBits(new int[] {5, 14});
+        neighbours[8] = setBits(new int[] {9, 16});
+        neighbours[9] = setBits(new int[] {8, 10, 17});
+        neighbours[10] = setBits(new int[] {2, 9, 11, 18});
+        neighbours[11] = setBits(new int[] {3, 10, 12, 19});
+        neighbours[12] = setBits(new int[] {4, 11, 13, 20});
+        neighbours[13] = setBits(new int[] {5, 12, 14, 21});
+        neighbours[14] = setBits(new int[] {6, 13, 15, 22});
+        neighbours[15] = setBits(new int[] {14, 23});
+        neighbours[16] = setBits(new int[] {8, 17});
+        neighbours[17] = setBits(new int[] {9, 16, 18, 25});
+        neighbours[18] = setBits(new int[] {10, 17, 19, 26});
+        neighbours[19] = setBits(new int[] {11, 18, 20, 27});
+        neighbours[20] = setBits(new int[] {12, 19, 21, 28});
+        neighbours[21] = setBits(new int[] {13, 20, 22, 29});
+        neighbours[22] = setBits(new int[] {14, 21, 23});
+        neighbours[23] = setBits(new int[] {15, 22});
+        neighbours[25] = setBits(new int[] {17, 26});
+        neighbours[26] = setBits(new int[] {18, 25, 27});
+        neighbours[27] = setBits(new int[] {19, 26, 28});
+        neighbours[28] = setBits(new int[] {20, 27, 29});
+        neighbours[29] = setBits(new int[] {21, 28});
     }
 
     /**
-     * List of checkmate patterns against circle pieces. Each element in the outer list is a single
-     * checkmate pattern. Inner lists contain bitmasks in the following order: opponent's circle
-     * piece location, current player's square piece location, current player's any-piece locations.
+     * Positions in front of each position in each direction, indexed by direction index (see
+     * GameUtils.DIRECTIONS) then by position [0, 31]. A ray runs from the neighbouring position up
+     * to the last valid position before the board's edge or a hole
+     */
+    public static final int[][] pushRays = new int[4][32];
+    /**
+     * Positions whose ray in each direction ends at a rail rather than an edge or hole that pieces
+     * can be pushed off, indexed by direction index
      */
-    public static List<List<Integer>> circleCheckmatePatterns = new ArrayList<>();
+    public static final int[] railEnds = new int[4];
     static {
-        // capture circle in top left corner
-        circleCheckmatePatterns.add(Arrays.asList((1 << 2), (1 << 3), (1 << 10)));
-        // capture circle in bottom left corner
-        circleCheckmatePatterns.add(Arrays.asList((1 << 25), (1 << 26), (1 << 17)));
-        // capture circle in top right corner
-        circleCheckmatePatterns.add(Arrays.asList((1 << 6), (1 << 5), (1 << 14)));
-        // capture circle in bottom right corner
-        circleCheckmatePatterns.add(Arrays.asList((1 << 29), (1 << 28), (1 << 21)));
+        int posMask, next, ray;
+        for (int dirIdx = 0; dirIdx < 4; dirIdx++) {
+            for (int pos = 0; pos < 32; pos++) {
+                posMask = 1 << pos;
+                if ((posMask & valid) == 0)
+                    continue;
+                ray = 0;
+                next = step(posMask, dirIdx);
+                while ((next & valid) != 0) {
+                    ray |= next;
+                    next = step(next, dirIdx);
+                }
+                pushRays[dirIdx][pos] = ray;
+                if (next == 0)
+                    railEnds[dirIdx] |= posMask;
+            }
+        }
     }
 
     /**
-     * List of checkmate patterns against square pieces. Each element in the outer list is a single
-     * checkmate pattern. Inner lists contain bitmasks in the following order: opponent's square
-     * piece location, opponent's any-piece locations, current player's square piece location,
-     * current player's any-piece locations.
+     * List of checkmate patterns against circle pieces. Each row is a single checkmate pattern
+     * containing bitmasks in the following order: opponent's circle piece location, current
+     * player's square piece location, current player's any-piece locations.
      */
-    public static List<List<Integer>> squareCheckmatePatterns = new ArrayList<>();
-    static {
-        // capture square in top left corner
-        squareCheckmatePatterns
-                .add(Arrays.asList((1 << 2), 0, (1 << 3), (1 << 10) | (1 << 18) | (1 << 26)));
-        // alternate capture square in top left corner
-        squareCheckmatePatterns.add(Arrays.asList((1 << 2), (1 << 10), (1 << 3),
-                (1 << 9) | (1 << 11) | (1 << 18) | (1 << 26)));
-        // capture square in bottom right corner
-        squareCheckmatePatterns
-                .add(Arrays.asList((1 << 29), 0, (1 << 28), (1 << 21) | (1 << 13) | (1 << 5)));
-        // alternate capture square in bottom right corner
-        squareCheckmatePatterns.add(Arrays.asList((1 << 29), (1 << 21), (1 << 28),
-                (1 << 20) | (1 << 22) | (1 << 13) | (1 << 5)));
+    public static final int[][] circleCheckmatePatterns = {
+            // capture circle in top left corner
+            {(1 << 2), (1 << 3), (1 << 10)},
+            // capture circle in bottom left corner
+            {(1 << 25), (1 << 26), (1 << 17)},
+            // capture circle in top right corner
+            {(1 << 6), (1 << 5), (1 << 14)},
+            // capture circle in bottom right corner
+            {(1 << 29), (1 << 28), (1 << 21)}};
+
+    /**
+     * List of checkmate patterns against square pieces. Each row is a single checkmate pattern
+     * containing bitmasks in the following order: opponent's square piece location, opponent's
+     * any-piece locations, current player's square piece location, current player's any-piece
+     * locations.
+     */
+    public static final int[][] squareCheckmatePatterns = {
+            // capture square in top left corner
+            {(1 << 2), 0, (1 << 3), (1 << 10) | (1 << 18) | (1 << 26)},
+            // alternate capture square in top left corner
+            {(1 << 2), (1 << 10), (1 << 3), (1 << 9) | (1 << 11) | (1 << 18) | (1 << 26)},
+            // capture square in bottom right corner
+            {(1 << 29), 0, (1 << 28), (1 << 21) | (1 << 13) | (1 << 5)},
+            // alternate capture square in bottom right corner
+            {(1 << 29), (1 << 21), (1 << 28), (1 << 20) | (1 << 22) | (1 << 13) | (1 << 5)}};
+
+    /**
+     * Get the position index of a single-bit position mask
+     * 
+     * @param posMask Bit mask with exactly one bit set
+     * @return Position [0, 31] of the set bit
+     */
+    public static int idx(int posMask) {
+        return Integer.numberOfTrailingZeros(posMask);
+    }
+
+    /**
+     * Get the orthogonally connected squares to the given position
+     * 
+     * @param posMask Bit mask with exactly one bit set
+     * @return Bit mask of the valid orthogonally connected squares
+     */
+    public static int orthogonal(int posMask) {
+        return neighbours[Integer.numberOfTrailingZeros(posMask)];
+    }
+
+    /**
+     * Move a position one step in the given direction
+     * 
+     * @param posMask Bit mask with exactly one bit set
+     * @param dirIdx  Direction index (r|l|u|d)
+     * @return Updated bit mask, or 1 if moved off a valid edge, or 0 if moved off a rail
+     */
+    private static int step(int posMask, int dirIdx) {
+        switch (dirIdx) {
+            case 0:
+                return (posMask & rightSide) == 0 ? posMask << 1 : 1;
+            case 1:
+                return (posMask & leftSide) == 0 ? posMask >>> 1 : 1;
+            case 2:
+                return (posMask & topSide) == 0 ? posMask >>> 8 : 0;
+            default:
+                return (posMask & bottomSide) == 0 ? posMask << 8 : 0;
+        }
+    }
+
+    /**
+     * Get the position of the given mask that comes first along a ray in the given direction.
+     * Rays to the right and down run towards higher bits, rays to the left and up towards lower
+     * bits
+     * 
+     * @param mask   Bit mask of positions on a single ray
+     * @param dirIdx Direction index of the ray
+     * @return Bit mask of the first position, or 0 if the mask is empty
+     */
+    public static int first(int mask, int dirIdx) {
+        if (dirIdx == 0 || dirIdx == 3)
+            return mask & -mask;
+        return Integer.highestOneBit(mask);
+    }
+
+    /**
+     * Get the positions of a ray that come before the given stopping position
+     * 
+     * @param ray    Bit mask of the ray
+     * @param stop   Bit mask of a single position on the ray, or 0 to keep the whole ray
+     * @param dirIdx Direction index of the ray
+     * @return Bit mask of the positions of the ray before the stopping position
+     */
+    public static int before(int ray, int stop, int dirIdx) {
+        if (stop == 0)
+            return ray;
+        if (dirIdx == 0 || dirIdx == 3)
+            return ray & (stop - 1);
+        return ray & -(stop << 1);
+    }
+
+    /**
+     * Shift packed bitboards one step in the given direction. Shifted positions may wrap onto
+     * another row or into the other player's half, so callers must mask the result
+     * 
+     * @param mask   Bitboards packed into a long (see Bitboard)
+     * @param dirIdx Direction index
+     * @return Shifted bitboards
+     */
+    public static long shift(long mask, int dirIdx) {
+        switch (dirIdx) {
+            case 0:
+                return mask << 1;
+            case 1:
+                return mask >>> 1;
+            case 2:
+                return mask >>> 8;
+            default:
+                return mask << 8;
+        }
     }
 
     /**
@@ -1,22 +1,30 @@
 package main.java.board;
 
-import java.util.Arrays;
-
-import main.java.util.BitboardUtils;
+import main.java.util.GameUtils;
 
 public class Bitboard {
-    // bitboards[0] - p1 circles
-    // bitboards[1] - p1 squares
-    // bitboards[2] - p2 circles
-    // bitboards[3] - p2 squares
-    // bitboards[4] - anchor
-    private int[] bitboards;
+    // circles - p1 circles in the low 32 bits, p2 circles in the high 32 bits
+    // squares - p1 squares in the low 32 bits, p2 squares in the high 32 bits
+    // anchor - bit mask of the anchored position, or 0 if there is no anchor
+    // keeping the board in primitives makes copying, hashing and comparing it allocation free
+    private long circles;
+    private long squares;
+    private int anchor;
+    // Zobrist hash of the board, updated incrementally as the board changes
+    private long hash;
+
+    // undo records returned by makeSlide() and makePush() are packed into a long:
+    // bits 0-4 - position of the slide source or of the pushing piece
+    // slides: bits 5-9 - position of the slide destination
+    // pushes: bits 5-6 - direction index, bits 7-12 - previous anchor position + 1 (0 if none),
+    // bits 13-15 - bitboard index + 1 of the piece pushed off the board (0 if none), bits 16-47 -
+    // bit mask of the pieces pushed along by the pushing piece
+    private static final long UNDO_PUSH = 1L << 62;
 
     /**
      * Initialize empty bitboard
      */
     public Bitboard() {
-        bitboards = new int[5];
     }
 
     /**
@@ -25,29 +33,55 @@ public class Bitboard {
      * @param toCopy Bitboard to copy
      */
     public Bitboard(Bitboard toCopy) {
-        bitboards = new int[5];
-        for (int i = 0; i < 5; i++) {
-            bitboards[i] = toCopy.bitboards[i];
-        }
+        restoreState(toCopy);
     }
 
     /**
      * For debugging purposes. Create a bitboard that copies the given bitboards
      * 
-     * @param toCopy
+     * @param toCopy Array of p1 circles, p1 squares, p2 circles, p2 squares and anchor masks
      */
     public Bitboard(int[] toCopy) {
-        bitboards = new int[5];
-        for (int i = 0; i < 5; i++) {
-            bitboards[i] = toCopy[i];
-        }
+        circles = pack(toCopy[0], toCopy[2]);
+        squares = pack(toCopy[1], toCopy[3]);
+        anchor = toCopy[4];
+        hash = computeHash();
+    }
+
+    /**
+     * Create a bitboard from packed circles and squares, as returned by getPackedCircles() and
+     * getPackedSquares()
+     * 
+     * @param circles Packed circles of both players
+     * @param squares Packed squares of both players
+     * @param anchor  Bit mask of the anchored position, or 0 if there is no anchor
+     */
+    public Bitboard(long circles, long squares, int anchor) {
+        this.circles = circles;
+        this.squares = squares;
+        this.anchor = anchor;
+        hash = computeHash();
+    }
+
+    /**
+     * Pack the bitboards of both players into a single long
+     * 
+     * @param p1 Bitboard belonging to p1
+     * @param p2 Bitboard belonging to p2
+     * @return p1's bitboard in the low 32 bits and p2's in the high 32 bits
+     */
+    private static long pack(int p1, int p2) {
+        return (p1 & 0xFFFFFFFFL) | ((long) p2 << 32);
     }
 
     /**
      * Reset the bitboard back to an empty state
      */
     public void reset() {
-        bitboards = new int[5];
+        circles = 0;
+        squares = 0;
+        anchor = 0;
+        hash = 0;
     }
 
     /**
@@ -59,7 +93,7 @@ public class Bitboard {
     public void setPiece(int idx, int val) {
         if (!isValid((1 << idx)))
             return;
-        bitboards[val] |= (1 << idx);
+        add(val, (1 << idx));
     }
 
     /**
@@ -68,7 +102,40 @@ public class Bitboard {
      * @param idx Position [0, 31] to set anchor
      */
     public void setAnchor(int idx) {
-        bitboards[4] = (1 << idx);
+        moveAnchor(1 << idx);
+    }
+
+    /**
+     * Move the anchor to the given position, keeping the hash up to date
+     * 
+     * @param anchorMask Bit mask of the new anchored position
+     */
+    private void moveAnchor(int anchorMask) {
+        hash ^= Zobrist.anchor(anchor) ^ Zobrist.anchor(anchorMask);
+        anchor = anchorMask;
+    }
+
+    /**
+     * Get the 64-bit Zobrist hash of the board
+     * 
+     * @return Hash of the current board state
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Compute the Zobrist hash of the board from scratch
+     * 
+     * @return Hash of the current board state
+     */
+    private long computeHash() {
+        long key = Zobrist.anchor(anchor);
+        for (int turn = 0; turn < 2; turn++) {
+            key ^= Zobrist.pieces(turn * 2, getCircles(turn));
+            key ^= Zobrist.pieces(turn * 2 + 1, getSquares(turn));
+        }
+        return key;
     }
 
     /**
@@ -78,7 +145,7 @@ public class Bitboard {
      * @return Bitboard of the player's pieces
      */
     public int getPieces(int turn) {
-        return bitboards[turn * 2] | bitboards[turn * 2 + 1];
+        return (int) ((circles | squares) >>> (turn << 5));
     }
 
     /**
@@ -87,7 +154,8 @@ public class Bitboard {
      * @return Bitboard of all pieces
      */
     public int getPieces() {
-        return bitboards[0] | bitboards[1] | bitboards[2] | bitboards[3];
+        long pieces = circles | squares;
+        return (int) pieces | (int) (pieces >>> 32);
     }
 
     /**
@@ -97,7 +165,7 @@ public class Bitboard {
      * @return Bitboard of the given player's squares
      */
     public int getSquares(int turn) {
-        return bitboards[turn * 2 + 1];
+        return (int) (squares >>> (turn << 5));
     }
 
     /**
@@ -107,7 +175,25 @@ public class Bitboard {
      * @return Bitboard of the given player's cirlces
      */
     public int getCircles(int turn) {
-        return bitboards[turn * 2];
+        return (int) (circles >>> (turn << 5));
+    }
+
+    /**
+     * Return the circles of both players packed into a long
+     * 
+     * @return p1's circles in the low 32 bits and p2's in the high 32 bits
+     */
+    public long getPackedCircles() {
+        return circles;
+    }
+
+    /**
+     * Return the squares of both players packed into a long
+     * 
+     * @return p1's squares in the low 32 bits and p2's in the high 32 bits
+     */
+    public long getPackedSquares() {
+        return squares;
     }
 
     /**
@@ -117,7 +203,7 @@ public class Bitboard {
      */
     public int getTurn() {
         // if the anchor is not on p1's pieces, it's p1's turn
-        if ((bitboards[4] & getPieces(0)) == 0)
+        if ((anchor & getPieces(0)) == 0)
             return 0;
         // else it's p2's turn
         return 1;
@@ -141,7 +227,7 @@ public class Bitboard {
      * @return true if piece at given position is a square, else false
      */
     public boolean isSquare(int posMask) {
-        return (posMask & bitboards[1]) != 0 || (posMask & bitboards[3]) != 0;
+        return (posMask & ((int) squares | (int) (squares >>> 32))) != 0;
     }
 
     /**
@@ -171,7 +257,16 @@ public class Bitboard {
      * @return true if given position is anchored, else false
      */
     public boolean isAnchored(int posMask) {
-        return posMask == bitboards[4];
+        return posMask == anchor;
+    }
+
+    /**
+     * Get the anchored position
+     * 
+     * @return Bit mask of the anchored position, or 0 if not anchored
+     */
+    public int getAnchor() {
+        return anchor;
     }
 
     /**
@@ -180,9 +275,9 @@ public class Bitboard {
      * @return The anchor position [0, 31] or -1 if not anchored
      */
     public int getAnchorPos() {
-        if (bitboards[4] == 0 || (bitboards[4] & BitMasks.valid) == 0)
+        if (anchor == 0 || (anchor & BitMasks.valid) == 0)
             return -1;
-        return (int) (Math.log(bitboards[4]) / Math.log(2));
+        return Integer.numberOfTrailingZeros(anchor);
     }
 
     /**
@@ -192,13 +287,57 @@ public class Bitboard {
      * @return Index of bitboard containing the piece, or -1 if none exists
      */
     private int getBitBoardIdx(int posMask) {
-        for (int i = 0; i < 4; i++) {
-            if ((bitboards[i] & posMask) != 0)
-                return i;
-        }
+        if (((int) circles & posMask) != 0)
+            return 0;
+        if (((int) squares & posMask) != 0)
+            return 1;
+        if (((int) (circles >>> 32) & posMask) != 0)
+            return 2;
+        if (((int) (squares >>> 32) & posMask) != 0)
+            return 3;
         return -1;
     }
 
+    /**
+     * Add the given position to the bitboard with the given index
+     * 
+     * @param bIdx    Index of bitboard (p1 circles, p1 squares, p2 circles, p2 squares)
+     * @param posMask Bit mask for position to add
+     */
+    private void add(int bIdx, int posMask) {
+        long mask = (posMask & 0xFFFFFFFFL) << ((bIdx >> 1) << 5);
+        if ((bIdx & 1) == 0) {
+            if ((circles & mask) != 0)
+                return;
+            circles |= mask;
+        } else {
+            if ((squares & mask) != 0)
+                return;
+            squares |= mask;
+        }
+        hash ^= Zobrist.piece(bIdx, posMask);
+    }
+
+    /**
+     * Remove the given position from the bitboard with the given index
+     * 
+     * @param bIdx    Index of bitboard (p1 circles, p1 squares, p2 circles, p2 squares)
+     * @param posMask Bit mask for position to remove
+     */
+    private void remove(int bIdx, int posMask) {
+        long mask = (posMask & 0xFFFFFFFFL) << ((bIdx >> 1) << 5);
+        if ((bIdx & 1) == 0) {
+            if ((circles & mask) == 0)
+                return;
+            circles &= ~mask;
+        } else {
+            if ((squares & mask) == 0)
+                return;
+            squares &= ~mask;
+        }
+        hash ^= Zobrist.piece(bIdx, posMask);
+    }
+
     /**
      * Perform sliding action from oldIdx to newIdx by updating bitboards
      * 
@@ -212,8 +351,83 @@ public class Bitboard {
                     + (int) (Math.log(oldPosMask) / Math.log(2)));
             return;
         }
-        bitboards[bIdx] ^= oldPosMask;
-        bitboards[bIdx] |= newPosMask;
+        remove(bIdx, oldPosMask);
+        add(bIdx, newPosMask);
+    }
+
+    /**
+     * Perform sliding action and return a record that can be used to undo it
+     * 
+     * @param oldPosMask Starting position of slide
+     * @param newPosMask Ending position of slide
+     * @return Undo record to pass to unmake()
+     */
+    public long makeSlide(int oldPosMask, int newPosMask) {
+        slide(oldPosMask, newPosMask);
+        return BitMasks.idx(oldPosMask) | (BitMasks.idx(newPosMask) << 5);
+    }
+
+    /**
+     * Perform a pushing action and return a record that can be used to undo it. The record holds
+     * the pieces pushed along, the piece pushed off the board and the previous anchor position
+     * 
+     * @param posMask Bit mask for position to begin push from
+     * @param dir     Direction of push
+     * @return Undo record to pass to unmake()
+     */
+    public long makePush(int posMask, char dir) {
+        return makePush(posMask, GameUtils.dirToIdx(dir));
+    }
+
+    /**
+     * Perform a pushing action and return a record that can be used to undo it
+     * 
+     * @param posMask Bit mask for position to begin push from
+     * @param dirIdx  Direction index of push (see GameUtils.DIRECTIONS)
+     * @return Undo record to pass to unmake()
+     */
+    public long makePush(int posMask, int dirIdx) {
+        int ray = BitMasks.pushRays[dirIdx][BitMasks.idx(posMask)];
+        // the pushed pieces run up to the first empty position, or off the end of the ray
+        int gap = BitMasks.first(ray & ~getPieces(), dirIdx);
+        int run = BitMasks.before(ray, gap, dirIdx);
+
+        long undo = UNDO_PUSH | BitMasks.idx(posMask) | (dirIdx << 5);
+        if (anchor != 0)
+            undo |= (BitMasks.idx(anchor) + 1) << 7;
+        if (gap == 0)
+            undo |= (getBitBoardIdx(BitMasks.first(run, dirIdx ^ 1)) + 1) << 13;
+        undo |= (run & 0xFFFFFFFFL) << 16;
+
+        moveAnchor(BitMasks.first(ray, dirIdx));
+        shiftPieces(posMask | run, run | gap, dirIdx);
+        return undo;
+    }
+
+    /**
+     * Undo a slide or push, restoring the board exactly to its state before the action. Actions
+     * must be undone in the reverse order they were made
+     * 
+     * @param undo Undo record returned by makeSlide() or makePush()
+     */
+    public void unmake(long undo) {
+        int posMask = 1 << (int) (undo & 31);
+        if ((undo & UNDO_PUSH) == 0) {
+            slide(1 << (int) ((undo >>> 5) & 31), posMask);
+            return;
+        }
+        int dirIdx = (int) (undo >>> 5) & 3;
+        int fallenBIdx = ((int) (undo >>> 13) & 7) - 1;
+        int run = (int) (undo >>> 16);
+        int gap = 0;
+        if (fallenBIdx == -1)
+            gap = BitMasks.first(BitMasks.pushRays[dirIdx][BitMasks.idx(posMask)] & ~run, dirIdx);
+        // pull the pieces back, then put back the piece that was pushed off
+        shiftPieces(run | gap, posMask | run, dirIdx ^ 1);
+        if (fallenBIdx != -1)
+            add(fallenBIdx, BitMasks.first(run, dirIdx ^ 1));
+        int prevAnchor = (int) (undo >>> 7) & 63;
+        moveAnchor(prevAnchor == 0 ? 0 : 1 << (prevAnchor - 1));
     }
 
     /**
@@ -223,27 +437,79 @@ public class Bitboard {
      * @param dir     Direction of push
      */
     public void push(int posMask, char dir) {
-        // update anchor position
-        bitboards[4] = BitboardUtils.updateMask(posMask, dir);
-
-        int bIdx;
-        int prevBIdx = -1;
-        while (isValid(posMask)) {
-            bIdx = getBitBoardIdx(posMask);
-            // add previous piece, if valid
-            if (prevBIdx != -1)
-                bitboards[prevBIdx] |= posMask;
-            // check if we're done with the push
-            if (bIdx == -1)
-                break;
-            // remove current piece if it doesn't match previous
-            if (bIdx != prevBIdx)
-                bitboards[bIdx] ^= posMask;
-            // iterate
-            posMask = BitboardUtils.updateMask(posMask, dir);
-            prevBIdx = bIdx;
-        }
-        return;
+        makePush(posMask, GameUtils.dirToIdx(dir));
+    }
+
+    /**
+     * Move every piece in a line one step in the given direction. Pieces that don't land in the
+     * destination mask are removed from the board
+     * 
+     * @param from   Bit mask of positions whose pieces move
+     * @param to     Bit mask of positions pieces may land on
+     * @param dirIdx Direction index to move pieces in
+     */
+    private void shiftPieces(int from, int to, int dirIdx) {
+        long fromMask = pack(from, from);
+        long toMask = pack(to, to);
+        long newCircles = (circles & ~fromMask)
+                | (BitMasks.shift(circles & fromMask, dirIdx) & toMask);
+        long newSquares = (squares & ~fromMask)
+                | (BitMasks.shift(squares & fromMask, dirIdx) & toMask);
+        long changedCircles = circles ^ newCircles;
+        long changedSquares = squares ^ newSquares;
+        hash ^= Zobrist.pieces(0, (int) changedCircles) ^ Zobrist.pieces(1, (int) changedSquares)
+                ^ Zobrist.pieces(2, (int) (changedCircles >>> 32))
+                ^ Zobrist.pieces(3, (int) (changedSquares >>> 32));
+        circles = newCircles;
+        squares = newSquares;
+    }
+
+    /**
+     * Rotate packed bitboards by 180 degrees. Position i maps to position 31 - i (the holes map onto
+     * each other), which is a bit reversal within each player's half
+     * 
+     * @param packed Bitboards of both players packed into a long
+     * @return Rotated bitboards, still with p1 in the low 32 bits
+     */
+    private static long rotate(long packed) {
+        // reversing the long also swaps the halves, so swap them back
+        return Long.rotateLeft(Long.reverse(packed), 32);
+    }
+
+    /**
+     * Rotate the board by 180 degrees. The rotated board is the same position to both players, so
+     * it has the same heuristic value and its moves are the rotated moves (see Move.rotate)
+     */
+    public void rotate() {
+        circles = rotate(circles);
+        squares = rotate(squares);
+        anchor = Integer.reverse(anchor);
+        hash = computeHash();
+    }
+
+    /**
+     * Replace the board with the canonical one of itself and its 180 degree rotation, the one
+     * whose packed circles, squares and anchor compare lowest. Both orientations of a position
+     * canonicalize to the same board, so tables keyed on canonical boards can share entries
+     * 
+     * @return true if the board was rotated, so moves found for it must be rotated back, else false
+     */
+    public boolean canonicalize() {
+        long rotatedCircles = rotate(circles);
+        long rotatedSquares = rotate(squares);
+        int rotatedAnchor = Integer.reverse(anchor);
+        int cmp = Long.compareUnsigned(rotatedCircles, circles);
+        if (cmp == 0)
+            cmp = Long.compareUnsigned(rotatedSquares, squares);
+        if (cmp == 0)
+            cmp = Integer.compareUnsigned(rotatedAnchor, anchor);
+        if (cmp >= 0)
+            return false;
+        circles = rotatedCircles;
+        squares = rotatedSquares;
+        anchor = rotatedAnchor;
+        hash = computeHash();
+        return true;
     }
 
     /**
@@ -252,9 +518,38 @@ public class Bitboard {
      * @param state Bitboard to set current state from
      */
     public void restoreState(Bitboard other) {
-        for (int i = 0; i < 5; i++) {
-            bitboards[i] = other.bitboards[i];
-        }
+        circles = other.circles;
+        squares = other.squares;
+        anchor = other.anchor;
+        hash = other.hash;
+    }
+
+    /**
+     * Restore state from packed circles and squares, as returned by getPackedCircles() and
+     * getPackedSquares()
+     * 
+     * @param circles Packed circles of both players
+     * @param squares Packed squares of both players
+     * @param anchor  Bit mask of the anchored position, or 0 if there is no anchor
+     */
+    public void restoreState(long circles, long squares, int anchor) {
+        restoreState(circles, squares, anchor, 0);
+        hash = computeHash();
+    }
+
+    /**
+     * Restore state from packed circles and squares along with their already known hash
+     * 
+     * @param circles Packed circles of both players
+     * @param squares Packed squares of both players
+     * @param anchor  Bit mask of the anchored position, or 0 if there is no anchor
+     * @param hash    Zobrist hash of the state
+     */
+    void restoreState(long circles, long squares, int anchor, long hash) {
+        this.circles = circles;
+        this.squares = squares;
+        this.anchor = anchor;
+        this.hash = hash;
     }
 
     /**
@@ -270,10 +565,10 @@ public class Bitboard {
      * For debugging purposes. Print unique representation of board state to the console
      */
     public void repr() {
-        for (int i = 0; i < 4; i++) {
-            System.out.print(bitboards[i] + ", ");
+        for (int turn = 0; turn < 2; turn++) {
+            System.out.print(getCircles(turn) + ", " + getSquares(turn) + ", ");
         }
-        System.out.println(bitboards[4]);
+        System.out.println(anchor);
     }
 
     /**
@@ -336,7 +631,7 @@ public class Bitboard {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(bitboards);
+        return (int) (hash ^ (hash >>> 32));
     }
 
     @Override
@@ -349,11 +644,7 @@ public class Bitboard {
             return false;
 
         Bitboard other = (Bitboard) obj;
-        for (int i = 0; i < this.bitboards.length; i++) {
-            if (this.bitboards[i] != other.bitboards[i])
-                return false;
-        }
-
-        return true;
+        return this.hash == other.hash && this.circles == other.circles
+                && this.squares == other.squares && this.anchor == other.anchor;
     }
 }
@@ -0,0 +1,160 @@
+package main.java.board;
+
+import java.util.Arrays;
+
+/**
+ * Set of board states backed by primitive arrays with open addressing (linear probing). Boards are
+ * stored by value as their hash, packed circles, packed squares and anchor, so adding one doesn't
+ * allocate. Every slot is stamped with the generation it was filled in, so clearing the set just
+ * starts a new generation instead of wiping the arrays.
+ */
+public class BoardSet {
+    private long[] hashes;
+    private long[] circles;
+    private long[] squares;
+    private int[] anchors;
+    private int[] stamps;
+    private int generation;
+    private int mask;
+    private int size;
+
+    /**
+     * Initialize an empty BoardSet
+     */
+    public BoardSet() {
+        this(1024);
+    }
+
+    /**
+     * Initialize an empty BoardSet with room for roughly the given number of boards before it
+     * needs to grow
+     * 
+     * @param capacity Expected number of boards
+     */
+    public BoardSet(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2);
+        generation = 1;
+    }
+
+    /**
+     * Allocate empty tables with the given number of slots
+     * 
+     * @param slots Number of slots, a power of two
+     */
+    private void allocate(int slots) {
+        hashes = new long[slots];
+        circles = new long[slots];
+        squares = new long[slots];
+        anchors = new int[slots];
+        stamps = new int[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Find the slot holding the given board, or the empty slot where it belongs
+     * 
+     * @param c      Packed circles of the board
+     * @param s      Packed squares of the board
+     * @param anchor Anchor mask of the board
+     * @param hash   Hash of the board
+     * @return Index of the slot
+     */
+    private int find(long c, long s, int anchor, long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (stamps[slot] == generation) {
+            if (hashes[slot] == hash && circles[slot] == c && squares[slot] == s
+                    && anchors[slot] == anchor)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Check whether the set contains the given board state
+     * 
+     * @param board Board state to look for
+     * @return true if the board state is in the set, else false
+     */
+    public boolean contains(Bitboard board) {
+        int slot = find(board.getPackedCircles(), board.getPackedSquares(), board.getAnchor(),
+                board.getHash());
+        return stamps[slot] == generation;
+    }
+
+    /**
+     * Add the given board state to the set. Only its current state is stored, so the board may
+     * keep changing afterwards
+     * 
+     * @param board Board state to add
+     * @return true if the board state was added, false if it was already in the set
+     */
+    public boolean add(Bitboard board) {
+        long c = board.getPackedCircles();
+        long s = board.getPackedSquares();
+        int anchor = board.getAnchor();
+        long hash = board.getHash();
+        int slot = find(c, s, anchor, hash);
+        if (stamps[slot] == generation)
+            return false;
+        // keep the table at most half full
+        if ((size + 1) << 1 > stamps.length) {
+            grow();
+            slot = find(c, s, anchor, hash);
+        }
+        hashes[slot] = hash;
+        circles[slot] = c;
+        squares[slot] = s;
+        anchors[slot] = anchor;
+        stamps[slot] = generation;
+        size++;
+        return true;
+    }
+
+    /**
+     * Double the number of slots, moving over the boards of the current generation
+     */
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldCircles = circles;
+        long[] oldSquares = squares;
+        int[] oldAnchors = anchors;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+        allocate(oldStamps.length << 1);
+        generation = 1;
+        int slot;
+        for (int i = 0; i < oldStamps.length; i++) {
+            if (oldStamps[i] != oldGeneration)
+                continue;
+            slot = find(oldCircles[i], oldSquares[i], oldAnchors[i], oldHashes[i]);
+            hashes[slot] = oldHashes[i];
+            circles[slot] = oldCircles[i];
+            squares[slot] = oldSquares[i];
+            anchors[slot] = oldAnchors[i];
+            stamps[slot] = generation;
+        }
+    }
+
+    /**
+     * Get the number of board states in the set
+     * 
+     * @return Size of the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the set in constant time, keeping its tables for reuse
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // stamps have wrapped around, so old stamps could look current again
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+}
@@ -1,35 +1,57 @@
 package main.java.board;
 
-import java.util.ArrayDeque;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.Queue;
-
+import main.java.util.EvaluationCache;
+import main.java.util.FloodFill;
 import main.java.util.GameUtils;
 import main.java.util.HeuristicUtils;
-import main.java.util.SearchUtils;
 
+/**
+ * Evaluates board states for the search agents. A Heuristic only holds its weights, which never
+ * change after it's created, and evaluating a board uses nothing but locals, so one Heuristic can
+ * be shared by any number of threads.
+ * 
+ * Evaluations can be cached by setting an EvaluationCache, which every Heuristic then shares.
+ */
 public class Heuristic {
+    /**
+     * Value of a won position for p1 (p2 wins are the negation)
+     */
+    public static final double WIN_VALUE = 10000.0;
+
+    /**
+     * Distance given to a circle that can't reach an "owned" connected component
+     */
+    private static final int UNREACHABLE = 100;
+    /**
+     * Every evaluation is divided by this, to keep it well inside the win values
+     */
+    private static final double NORMALIZATION = 6200;
+    /**
+     * How far clear of the search window a bound has to be to return it, so rounding in the order
+     * terms are added can't move the full evaluation back inside the window
+     */
+    private static final double BOUND_MARGIN = 1e-9;
+
     /**
      * Hard-coded values of the strength of having a piece at a certain position (very rough values
-     * at the moment)
+     * at the moment), indexed by position [0, 31]
      */
-    private Map<Integer, Double> boardValues = new HashMap<>();
-
-    // data structures to facilitate connected component ownership
-    private Map<Integer, Set<Integer>> posToAdjCCID = new HashMap<>();
-    private Map<Integer, Integer> ccIDToOwner = new HashMap<>();
-    private Map<Integer, Integer> ownerToCCs = new HashMap<>();
-    // data structures to facilitate BFS
-    private Queue<Integer> searchQueue = new ArrayDeque<>();
-    private Map<Integer, Integer> prev = new HashMap<>();
-    private Map<Integer, Integer> dist = new HashMap<>();
-    // visited bitmap instance variable
-    private int visited;
+    private final double[] boardValues = new double[32];
+
+    /**
+     * Cache of evaluations shared by every Heuristic, or null if evaluations aren't cached
+     */
+    private static volatile EvaluationCache cache;
 
     // weights for each heuristic component, default values
     private double[] weights = new double[HeuristicUtils.numComponents];
+    // hash of the component weights and board position values, telling apart the evaluations of
+    // differently weighted heuristics in the cache
+    private final long identity;
+    // most the connected component and isolated circle terms, and each circle's distance term, can
+    // move the evaluation (before normalizing)
+    private final double componentBound;
+    private final double circleBound;
     // weights[0] = square weight
     // weights[1] = circle weight
     // weights[2] = mobility weight
@@ -73,6 +95,9 @@ public class Heuristic {
             initValues[i - HeuristicUtils.numComponents] = values[i];
         }
         HeuristicUtils.initBoardValues(boardValues, initValues);
+        identity = computeIdentity();
+        componentBound = computeComponentBound();
+        circleBound = UNREACHABLE * Math.abs(weights[6]);
     }
 
     /**
@@ -82,28 +107,248 @@ public class Heuristic {
      * @param positionWeights  Array of doubles for position weights
      */
     public Heuristic(double[] componentWeights, double[] positionWeights) {
-        weights = componentWeights;
+        // copy the weights, so the identity stays right if the caller changes them afterwards
+        weights = componentWeights.clone();
         HeuristicUtils.initBoardValues(boardValues, positionWeights);
+        identity = computeIdentity();
+        componentBound = computeComponentBound();
+        circleBound = UNREACHABLE * Math.abs(weights[6]);
+    }
+
+    /**
+     * Hash the component weights and board position values. Every bit of every value is mixed in,
+     * in order, so heuristics differing in any single weight get unrelated identities
+     * 
+     * @return Identity of this heuristic's weights
+     */
+    private long computeIdentity() {
+        long hash = 0;
+        for (double weight : weights) {
+            hash = mix(hash + Double.doubleToLongBits(weight));
+        }
+        for (double value : boardValues) {
+            hash = mix(hash + Double.doubleToLongBits(value));
+        }
+        return hash;
+    }
+
+    /**
+     * Scramble the bits of a long (the SplitMix64 finalizer), so every input bit affects every
+     * output bit
+     * 
+     * @param x Value to scramble
+     * @return Scrambled value
+     */
+    private static long mix(long x) {
+        x += 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Find the most the connected component and isolated circle terms can move the evaluation in
+     * either direction. Each player has between 1 and 5 connected components, and at most 2
+     * isolated circles, and the two players' terms pull in opposite directions
+     * 
+     * @return Bound on the connected component and isolated circle terms (before normalizing)
+     */
+    private double computeComponentBound() {
+        return 4 * Math.abs(weights[4]) + 2 * Math.abs(weights[5]);
+    }
+
+    /**
+     * Get the identity of this heuristic's weights. Heuristics with the same weights have the same
+     * identity, and so share cached evaluations
+     * 
+     * @return Identity of this heuristic's weights
+     */
+    public long getIdentity() {
+        return identity;
+    }
+
+    /**
+     * Start caching evaluations, so each position is only evaluated the first time it's seen
+     * (until it's replaced) by any Heuristic with the same weights
+     * 
+     * @param evaluationCache EvaluationCache to use, or null to stop caching
+     */
+    public static void setCache(EvaluationCache evaluationCache) {
+        cache = evaluationCache;
+    }
+
+    /**
+     * Get the cache of evaluations in use, for example to report its hit rate
+     * 
+     * @return EvaluationCache in use, or null if evaluations aren't being cached
+     */
+    public static EvaluationCache getCache() {
+        return cache;
     }
 
     /**
-     * Evaluate the given board state
+     * Evaluate the given board state, using the cached evaluation if there is one
      * 
      * @param board The board state to evaluate
      * @return The heuristic evalution. Higher values are better for p1/worse for p2
      */
     public double heuristic(Bitboard board) {
+        EvaluationCache evaluationCache = cache;
+        if (evaluationCache != null)
+            return evaluationCache.evaluate(board, this);
+        return evaluate(board);
+    }
+
+    /**
+     * Evaluate the given board state, using the cached evaluation if there is one. The positional
+     * terms are given rather than computed, for callers keeping them up to date incrementally (see
+     * IncrementalEvaluation)
+     * 
+     * @param board      The board state to evaluate
+     * @param p1Position Strength of p1's piece positions on the board (see position())
+     * @param p2Position Strength of p2's piece positions on the board (see position())
+     * @return The heuristic evalution. Higher values are better for p1/worse for p2
+     */
+    public double heuristic(Bitboard board, double p1Position, double p2Position) {
+        return heuristic(board, p1Position, p2Position, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Evaluate the given board state, using the cached evaluation if there is one, and otherwise
+     * stopping early once the evaluation can't land inside the given search window (see
+     * evaluate(Bitboard, double, double, double, double))
+     * 
+     * @param board      The board state to evaluate
+     * @param p1Position Strength of p1's piece positions on the board (see position())
+     * @param p2Position Strength of p2's piece positions on the board (see position())
+     * @param alpha      Lower end of the search window
+     * @param beta       Upper end of the search window
+     * @return The heuristic evalution if it's inside (alpha, beta), otherwise the evaluation or a
+     *         bound on it outside the window
+     */
+    public double heuristic(Bitboard board, double p1Position, double p2Position, double alpha,
+            double beta) {
+        EvaluationCache evaluationCache = cache;
+        if (evaluationCache != null)
+            return evaluationCache.evaluate(board, this, p1Position, p2Position, alpha, beta);
+        return evaluate(board, p1Position, p2Position, alpha, beta);
+    }
+
+    /**
+     * Evaluate the given board state without looking in the cache
+     * 
+     * @param board The board state to evaluate
+     * @return The heuristic evalution. Higher values are better for p1/worse for p2
+     */
+    public double evaluate(Bitboard board) {
+        return evaluate(board, position(board, 0), position(board, 1));
+    }
+
+    /**
+     * Sum the strength of the given player's piece positions, each piece's position value weighted
+     * by its piece type. This is the only part of the evaluation that's a plain sum over pieces,
+     * so it can be updated as pieces move (see positionChange())
+     * 
+     * @param board Board to look at
+     * @param turn  Turn indicator of the player
+     * @return Strength of the player's piece positions
+     */
+    public double position(Bitboard board, int turn) {
+        return positionChange(0, 0, board.getCircles(turn), board.getSquares(turn));
+    }
+
+    /**
+     * Find how much the strength of a player's piece positions changes when their pieces move.
+     * Only the positions whose contents differ are looked at
+     * 
+     * @param oldCircles Bit mask of the player's circles before
+     * @param oldSquares Bit mask of the player's squares before
+     * @param newCircles Bit mask of the player's circles after
+     * @param newSquares Bit mask of the player's squares after
+     * @return Change in the strength of the player's piece positions
+     */
+    public double positionChange(int oldCircles, int oldSquares, int newCircles, int newSquares) {
+        double change = 0;
+        int oldPieces = oldCircles | oldSquares;
+        int newPieces = newCircles | newSquares;
+        // positions whose contents differ
+        int changed = (oldCircles ^ newCircles) | (oldSquares ^ newSquares);
+        int posMask;
+        while (changed != 0) {
+            posMask = changed & ~(changed - 1);
+            changed ^= posMask;
+            if ((oldPieces & posMask) != 0)
+                change -= ((oldSquares & posMask) != 0 ? weights[0] : weights[1])
+                        * boardValues[BitMasks.idx(posMask)];
+            if ((newPieces & posMask) != 0)
+                change += ((newSquares & posMask) != 0 ? weights[0] : weights[1])
+                        * boardValues[BitMasks.idx(posMask)];
+        }
+        return change;
+    }
+
+    /**
+     * Evaluate the given board state without looking in the cache, given the positional terms.
+     * Everything else depends on how the pieces and empty positions connect, so it's computed from
+     * scratch
+     * 
+     * @param board      The board state to evaluate
+     * @param p1Position Strength of p1's piece positions on the board (see position())
+     * @param p2Position Strength of p2's piece positions on the board (see position())
+     * @return The heuristic evalution. Higher values are better for p1/worse for p2
+     */
+    public double evaluate(Bitboard board, double p1Position, double p2Position) {
+        return evaluate(board, p1Position, p2Position, Double.NEGATIVE_INFINITY,
+                Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Evaluate the given board state without looking in the cache, stopping early once the
+     * evaluation can't land inside the given search window. The terms are computed cheapest first
+     * (piece positions, then connected components, then each circle's distance to an "owned"
+     * connected component), and after each stage the terms still to come are bounded by the most
+     * they could move the evaluation. If that bound falls outside the window, the bound is returned
+     * instead of the evaluation
+     * 
+     * @param board      The board state to evaluate
+     * @param p1Position Strength of p1's piece positions on the board (see position())
+     * @param p2Position Strength of p2's piece positions on the board (see position())
+     * @param alpha      Lower end of the search window
+     * @param beta       Upper end of the search window
+     * @return The heuristic evalution if it's inside (alpha, beta). Otherwise either the evaluation
+     *         or a bound on it: an upper bound no greater than alpha, or a lower bound no less than
+     *         beta
+     */
+    public double evaluate(Bitboard board, double p1Position, double p2Position, double alpha,
+            double beta) {
+        // a player missing a piece is the ultimate bad position
+        if (Integer.bitCount(board.getPieces(0)) != 5) {
+            return -WIN_VALUE;
+        }
+        if (Integer.bitCount(board.getPieces(1)) != 5) {
+            return WIN_VALUE;
+        }
+
+        // most each of p1's circle distance terms can lower and raise the evaluation (p2's pull
+        // the other way)
+        double down = weights[6] > 0 ? circleBound : 0;
+        double up = circleBound - down;
+        int p1Circles = Integer.bitCount(board.getCircles(0));
+        int p2Circles = Integer.bitCount(board.getCircles(1));
+
+        // positional terms are already known
+        double known = weights[3] * p1Position - weights[3] * p2Position;
+        double bound = cutoff(known, componentBound + p1Circles * down + p2Circles * up,
+                componentBound + p1Circles * up + p2Circles * down, alpha, beta);
+        if (!Double.isNaN(bound))
+            return bound;
+
         double h = 0;
 
         // mobility
         int p1Mobility = 0;
         int p2Mobility = 0;
-        // strength of piece positions
-        double p1Position = 0;
-        double p2Position = 0;
-        // number of pieces
-        int p1Pieces = 0;
-        int p2Pieces = 0;
         // number of connected components
         int p1CC = 0;
         int p2CC = 0;
@@ -111,9 +356,10 @@ public class Heuristic {
         int p1Isolated = 0;
         int p2Isolated = 0;
 
-        double weight;
+        // pieces already found in an explored connected component
+        int visited = 0;
+        int cc;
 
-        visited = 0;
         // check p1's pieces
         int posMasks = board.getPieces(0);
         int posMask;
@@ -121,18 +367,13 @@ public class Heuristic {
             posMask = posMasks & ~(posMasks - 1);
             posMasks ^= posMask;
             if ((visited & posMask) == 0) {
-                if (exploreCC(board, posMask, 0) == 1)
+                cc = exploreCC(board, posMask, 0);
+                visited |= cc;
+                if (Integer.bitCount(cc & board.getPieces(0)) == 1)
                     if (!board.isSquare(posMask))
                         p1Isolated++;
                 p1CC++;
             }
-            weight = board.isSquare(posMask) ? weights[0] : weights[1];
-            if (!boardValues.containsKey(posMask)) {
-                System.out.println("I don't have " + (int) (Math.log(posMask) / Math.log(2)));
-                board.show();
-            }
-            p1Position += weight * boardValues.get(posMask);
-            p1Pieces++;
         }
         // check p2's pieces
         visited = 0;
@@ -141,64 +382,70 @@ public class Heuristic {
             posMask = posMasks & ~(posMasks - 1);
             posMasks ^= posMask;
             if ((visited & posMask) == 0) {
-                if (exploreCC(board, posMask, 1) == 1)
+                cc = exploreCC(board, posMask, 1);
+                visited |= cc;
+                if (Integer.bitCount(cc & board.getPieces(1)) == 1)
                     if (!board.isSquare(posMask))
                         p2Isolated++;
                 p2CC++;
             }
-            weight = board.isSquare(posMask) ? weights[0] : weights[1];
-            p2Position += weight * boardValues.get(posMask);
-            p2Pieces++;
         }
 
-        // perform connected component analysis on empty spaces
-        posToAdjCCID.clear();
-        ccIDToOwner.clear();
-        ownerToCCs.clear();
-        int toCheck = (BitMasks.valid & (~board.getPieces()));
-        int check;
-        int ccId = 0;
+        known += -weights[4] * (p1CC - 1) + weights[4] * (p2CC - 1) - weights[5] * p1Isolated
+                + weights[5] * p2Isolated;
+        bound = cutoff(known, p1Circles * down + p2Circles * up, p1Circles * up + p2Circles * down,
+                alpha, beta);
+        if (!Double.isNaN(bound))
+            return bound;
+
+        // perform connected component analysis on empty spaces, finding the empty connected
+        // components "owned" by each player
+        int p1Owned = 0;
+        int p2Owned = 0;
+        int empty = BitMasks.valid & (~board.getPieces());
+        int toCheck = empty;
+        int owner;
         while (toCheck != 0) {
-            check = toCheck & ~(toCheck - 1);
-            toCheck ^= SearchUtils.checkSpaces(board, check, ccId++, posToAdjCCID, ccIDToOwner,
-                    ownerToCCs);
+            cc = FloodFill.fill(toCheck & ~(toCheck - 1), empty);
+            toCheck ^= cc;
+            owner = FloodFill.owner(cc, board.getPieces(0), board.getPieces(1));
+            if (owner == 0)
+                p1Owned |= cc;
+            else if (owner == 1)
+                p2Owned |= cc;
         }
 
         // check how close each player's circles are to an "owned" connected component
-        int circles, circleMask, searchDistance;
+        int circles, circleMask, searchDistance, owned, passable;
         boolean adjacent;
         for (int turn = 0; turn < 2; turn++) {
             circles = board.getCircles(turn);
+            owned = turn == 0 ? p1Owned : p2Owned;
+            passable = BitMasks.valid & ~board.getPieces(1 - turn);
             while (circles != 0) {
-                adjacent = false;
                 circleMask = circles & ~(circles - 1);
                 circles ^= circleMask;
-                if (posToAdjCCID.containsKey(circleMask)) {
-                    for (int id : posToAdjCCID.get(circleMask)) {
-                        if (ccIDToOwner.get(id) == turn) {
-                            adjacent = true;
-                            break;
-                        }
-                    }
-                }
+                adjacent = (FloodFill.neighbours(circleMask) & owned) != 0;
                 if (!adjacent) {
-                    searchDistance = search(board, circleMask, turn);
+                    searchDistance = search(circleMask, passable, owned);
                     if (turn == 0 && searchDistance > GameUtils.NUM_SLIDES) {
                         h += -weights[6] * searchDistance;
                     } else if (turn == 1 && searchDistance > GameUtils.NUM_SLIDES) {
                         h += weights[6] * searchDistance;
                     }
                 }
+                // one less circle left to bound
+                if (turn == 0)
+                    p1Circles--;
+                else
+                    p2Circles--;
+                bound = cutoff(known + h, p1Circles * down + p2Circles * up,
+                        p1Circles * up + p2Circles * down, alpha, beta);
+                if (!Double.isNaN(bound))
+                    return bound;
             }
         }
 
-        // a player missing a piece is the ultimate bad position
-        if (p1Pieces != 5) {
-            return -10000.0;
-        }
-        if (p2Pieces != 5) {
-            return 10000.0;
-        }
         // weight the components of the heuristic
         h += weights[2] * p1Mobility;
         h += -weights[2] * p2Mobility;
@@ -212,105 +459,73 @@ public class Heuristic {
         h += -weights[5] * p1Isolated;
         h += weights[5] * p2Isolated;
 
-        h /= 6200; // normalize
+        h /= NORMALIZATION;
         return h;
     }
 
     /**
-     * Fully explore the connected component that the given position is a part of
+     * Check whether a partly computed evaluation is sure to land outside the search window
      * 
-     * @param board Board object to be used
-     * @param row   Row to search from
-     * @param col   Column to search from
-     * @param turn  Turn indicator
-     * @return Number of pieces found in the connected component
+     * @param known Sum of the terms computed so far (before normalizing)
+     * @param below Most the terms still to come can lower the evaluation
+     * @param above Most the terms still to come can raise the evaluation
+     * @param alpha Lower end of the search window
+     * @param beta  Upper end of the search window
+     * @return A bound on the evaluation outside the window, or NaN if the evaluation could still
+     *         land inside it
      */
-    private int exploreCC(Bitboard board, int posMask, int turn) {
-        // (this isn't a real queue... but we're not doing shortest path so its fine)
-        int queue = posMask;
-        int ccSize = 0;
-        while (queue != 0) {
-            posMask = queue & ~(queue - 1);
-            queue ^= posMask;
-
-            if ((visited & posMask) != 0)
-                continue;
-
-            visited |= posMask;
-
-            if (!board.isValid(posMask))
-                continue;
-
-            if (board.owns(posMask, 1 - turn))
-                continue;
-            else if (board.owns(posMask, turn)) {
-                ccSize++;
-            }
+    private static double cutoff(double known, double below, double above, double alpha,
+            double beta) {
+        double upper = (known + above) / NORMALIZATION;
+        if (upper + BOUND_MARGIN <= alpha)
+            return upper;
+        double lower = (known - below) / NORMALIZATION;
+        if (lower - BOUND_MARGIN >= beta)
+            return lower;
+        return Double.NaN;
+    }
 
-            queue |= BitMasks.orthogonal.get(posMask);
-        }
-        return ccSize;
+    /**
+     * Fully explore the connected component that the given position is a part of, moving through
+     * everything except the opponent's pieces
+     * 
+     * @param board   Board object to be used
+     * @param posMask Position to search from
+     * @param turn    Turn indicator
+     * @return Bit mask of the connected component
+     */
+    private int exploreCC(Bitboard board, int posMask, int turn) {
+        return FloodFill.fill(posMask, BitMasks.valid & ~board.getPieces(1 - turn));
     }
 
     /**
      * Search for shortest path from given position to an "owned" connected component without
-     * traveling through opponent's pieces
+     * traveling through opponent's pieces. The search grows a frontier mask outwards one distance
+     * at a time, shifting the whole frontier at once, until it meets an "owned" position
      * 
-     * @param board   Board to analyze
-     * @param posMask Position to search from
-     * @param turn    Whose turn it is
+     * @param posMask  Position to search from
+     * @param passable Bit mask of the positions that can be traveled through (the valid positions
+     *                 not holding one of the opponent's pieces)
+     * @param owned    Bit mask of the empty connected components "owned" by the player
      * @return Shortest distance to an "owned" connected component
      */
-    private int search(Bitboard board, int posMask, int turn) {
+    private int search(int posMask, int passable, int owned) {
         // if this player doesn't even "own" any connected components, they're in bad shape...
-        if (!ownerToCCs.containsKey(turn)) {
-            return 100;
+        if (owned == 0) {
+            return UNREACHABLE;
         }
 
-        // perform basic BFS to explore the connected component
-        // we're finding distance to an "owned" connected component
-        int target = ownerToCCs.get(turn);
-        int orthogonal, nextMask, altDist;
-        int myVisit = 0;
-
-        searchQueue.clear();
-        prev.clear();
-        dist.clear();
-
-        searchQueue.add(posMask);
-        dist.put(posMask, 0);
-
-        while (!searchQueue.isEmpty()) {
-            // get next position off of queue
-            posMask = searchQueue.poll();
-
-            // ignore if visited, invalid location, or opponent owns
-            if ((myVisit & posMask) != 0 || !board.isValid(posMask)
-                    || board.owns(posMask, 1 - turn))
-                continue;
-            myVisit |= posMask;
-
-            // check if it's a target
-            if ((target & posMask) != 0) {
-                // return distance to posMask
-                return dist.get(prev.get(posMask)) + 1;
-            }
-
-            // continue BFS
-            orthogonal = BitMasks.orthogonal.get(posMask);
-            while (orthogonal != 0) {
-                nextMask = orthogonal & ~(orthogonal - 1);
-                orthogonal ^= nextMask;
-
-                altDist = dist.get(posMask) + 1;
-                if (altDist < dist.getOrDefault(nextMask, Integer.MAX_VALUE)) {
-                    prev.put(nextMask, posMask);
-                    dist.put(nextMask, altDist);
-                }
-                searchQueue.add(nextMask);
-            }
+        int visited = posMask;
+        int frontier = posMask;
+        for (int dist = 1; frontier != 0; dist++) {
+            // step every position of the frontier to its unvisited neighbours
+            frontier = FloodFill.neighbours(frontier) & passable & ~visited;
+            // check if one of them is a target
+            if ((frontier & owned) != 0)
+                return dist;
+            visited |= frontier;
         }
         // no path found to a target (the circle is isolated)
-        return 100;
+        return UNREACHABLE;
     }
 }
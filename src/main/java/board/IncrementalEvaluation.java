@@ -0,0 +1,114 @@
+package main.java.board;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a Heuristic's positional terms up to date as a search moves down and back up the game
+ * tree, so evaluating a position only has to compute the terms that depend on how the pieces
+ * connect. The board and positional terms of each position on the current path are kept on a
+ * stack. Moving to a child position only looks at the squares touched by the slides and push
+ * taken to reach it, and moving back up just pops the stack.
+ * 
+ * An IncrementalEvaluation belongs to a single search, so it isn't safe to share between threads.
+ */
+public class IncrementalEvaluation {
+    private final Heuristic heuristic;
+
+    // packed circles and squares, and p1's and p2's positional terms, of each position on the
+    // current path, indexed by ply
+    private long[] circles;
+    private long[] squares;
+    private double[] p1Positions;
+    private double[] p2Positions;
+    private int ply;
+
+    /**
+     * Initialize an IncrementalEvaluation for the given heuristic. Call reset() with the root of
+     * the search before using it
+     * 
+     * @param heuristic Heuristic to evaluate positions with
+     */
+    public IncrementalEvaluation(Heuristic heuristic) {
+        this.heuristic = heuristic;
+        circles = new long[8];
+        squares = new long[8];
+        p1Positions = new double[8];
+        p2Positions = new double[8];
+    }
+
+    /**
+     * Start over from the given root position, computing its positional terms from scratch
+     * 
+     * @param board Root of the search
+     */
+    public void reset(Bitboard board) {
+        ply = 0;
+        circles[0] = board.getPackedCircles();
+        squares[0] = board.getPackedSquares();
+        p1Positions[0] = heuristic.position(board, 0);
+        p2Positions[0] = heuristic.position(board, 1);
+    }
+
+    /**
+     * Move down to a position reached by a move from the current one, either a successor of the
+     * current board or the same board object after making a move on it
+     * 
+     * @param board Board of the position moved to
+     */
+    public void push(Bitboard board) {
+        if (ply + 1 == circles.length) {
+            circles = Arrays.copyOf(circles, circles.length * 2);
+            squares = Arrays.copyOf(squares, squares.length * 2);
+            p1Positions = Arrays.copyOf(p1Positions, p1Positions.length * 2);
+            p2Positions = Arrays.copyOf(p2Positions, p2Positions.length * 2);
+        }
+        long oldCircles = circles[ply];
+        long oldSquares = squares[ply];
+        long newCircles = board.getPackedCircles();
+        long newSquares = board.getPackedSquares();
+        // only the squares whose contents differ are looked at
+        double p1Position = p1Positions[ply] + heuristic.positionChange((int) oldCircles,
+                (int) oldSquares, (int) newCircles, (int) newSquares);
+        double p2Position = p2Positions[ply] + heuristic.positionChange(
+                (int) (oldCircles >>> 32), (int) (oldSquares >>> 32), (int) (newCircles >>> 32),
+                (int) (newSquares >>> 32));
+        ply++;
+        circles[ply] = newCircles;
+        squares[ply] = newSquares;
+        p1Positions[ply] = p1Position;
+        p2Positions[ply] = p2Position;
+    }
+
+    /**
+     * Move back up to the position before the last push()
+     */
+    public void pop() {
+        ply--;
+    }
+
+    /**
+     * Evaluate the current position, using the cached evaluation if there is one (see
+     * Heuristic.setCache)
+     * 
+     * @param board Board of the current position
+     * @return The heuristic evalution. Higher values are better for p1/worse for p2
+     */
+    public double evaluate(Bitboard board) {
+        return heuristic.heuristic(board, p1Positions[ply], p2Positions[ply]);
+    }
+
+    /**
+     * Evaluate the current position for a search with the given window, using the cached
+     * evaluation if there is one. The evaluation stops early once it can't land inside the window
+     * (see Heuristic.evaluate(Bitboard, double, double, double, double))
+     * 
+     * @param board Board of the current position
+     * @param alpha Lower end of the search window
+     * @param beta  Upper end of the search window
+     * @return The heuristic evalution if it's inside (alpha, beta), otherwise the evaluation or a
+     *         bound on it outside the window
+     */
+    public double evaluate(Bitboard board, double alpha, double beta) {
+        return heuristic.heuristic(board, p1Positions[ply], p2Positions[ply], alpha, beta);
+    }
+}
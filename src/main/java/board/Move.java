@@ -1,79 +1,317 @@
 package main.java.board;
 
-import java.util.ArrayList;
-import java.util.List;
 import main.java.util.BitboardUtils;
+import main.java.util.GameUtils;
 
 /**
- * Class to uniquely represent a move in Push Fight to facilitate MAST. All unit actions are
- * represented using two integers. Sliding action have a source bitmap followed by a destination
- * bitmap. Pushing actions have a source bitmap followed by the direction character (r|l|u|d) casted
- * to an int.
+ * Class to uniquely represent a move in Push Fight to facilitate MAST. A whole turn is packed into
+ * a single int using position indices [0, 31] and direction indices into GameUtils.DIRECTIONS:
+ * 
+ * bits 0-1 - number of slides, bits 2-11 - first slide, bits 12-21 - second slide, bits 22-28 -
+ * push, bit 29 - set once the push has been added.
+ * 
+ * A slide action is packed into 10 bits (source position, then destination position) and a push
+ * action into 7 bits (position of the pushing piece, then direction index). These are the same
+ * encodings used by the MoveLists filled during move generation.
  */
 public class Move {
-    public List<Integer> actions;
+    private static final int SLIDE_BITS = 10;
+    private static final int PUSH_SHIFT = 2 + GameUtils.NUM_SLIDES * SLIDE_BITS;
+    private static final int HAS_PUSH = 1 << (PUSH_SHIFT + 7);
+
+    public int code;
     public double reward;
     public int turn;
 
     public Move() {
-        actions = new ArrayList<>();
     }
 
     public Move(Move m) {
-        actions = new ArrayList<>(m.actions);
+        code = m.code;
+    }
+
+    public Move(int code) {
+        this.code = code;
     }
 
     /**
-     * Attempt to perform move on the given bitboard. If move is valid, update the board to reflect
-     * the move and return true. If the move is invalid on the given board, return false and don't
-     * change the board state.
+     * Pack a slide action
      * 
+     * @param srcMask Bit mask of the slide's starting position
+     * @param dstMask Bit mask of the slide's ending position
+     * @return Packed slide action
+     */
+    public static int slideAction(int srcMask, int dstMask) {
+        return BitMasks.idx(srcMask) | (BitMasks.idx(dstMask) << 5);
+    }
+
+    /**
+     * Pack a push action
+     * 
+     * @param posMask Bit mask of the pushing piece's position
+     * @param dir     Direction of push
+     * @return Packed push action
+     */
+    public static int pushAction(int posMask, char dir) {
+        return pushAction(posMask, GameUtils.dirToIdx(dir));
+    }
+
+    /**
+     * Pack a push action
+     * 
+     * @param posMask Bit mask of the pushing piece's position
+     * @param dirIdx  Direction index of push (see GameUtils.DIRECTIONS)
+     * @return Packed push action
+     */
+    public static int pushAction(int posMask, int dirIdx) {
+        return BitMasks.idx(posMask) | (dirIdx << 5);
+    }
+
+    /**
+     * Get the starting position of a packed slide action
+     * 
+     * @param slide Packed slide action
+     * @return Bit mask of the slide's starting position
+     */
+    public static int slideSrc(int slide) {
+        return 1 << (slide & 31);
+    }
+
+    /**
+     * Get the ending position of a packed slide action
+     * 
+     * @param slide Packed slide action
+     * @return Bit mask of the slide's ending position
+     */
+    public static int slideDst(int slide) {
+        return 1 << ((slide >>> 5) & 31);
+    }
+
+    /**
+     * Get the pushing piece's position of a packed push action
+     * 
+     * @param push Packed push action
+     * @return Bit mask of the pushing piece's position
+     */
+    public static int pushSrc(int push) {
+        return 1 << (push & 31);
+    }
+
+    /**
+     * Get the direction of a packed push action
+     * 
+     * @param push Packed push action
+     * @return Direction (r|l|u|d) of the push
+     */
+    public static char pushDir(int push) {
+        return GameUtils.DIRECTIONS[pushDirIdx(push)];
+    }
+
+    /**
+     * Get the direction index of a packed push action
+     * 
+     * @param push Packed push action
+     * @return Direction index of the push (see GameUtils.DIRECTIONS)
+     */
+    public static int pushDirIdx(int push) {
+        return (push >>> 5) & 3;
+    }
+
+    /**
+     * Append a slide to a packed move
+     * 
+     * @param code  Packed move without a push
+     * @param slide Packed slide action
+     * @return Packed move with the slide appended
+     */
+    public static int withSlide(int code, int slide) {
+        int numSlides = code & 3;
+        return (code | (slide << (2 + numSlides * SLIDE_BITS))) + 1;
+    }
+
+    /**
+     * Add the push to a packed move
+     * 
+     * @param code Packed move without a push
+     * @param push Packed push action
+     * @return Packed move with the push added
+     */
+    public static int withPush(int code, int push) {
+        return code | (push << PUSH_SHIFT) | HAS_PUSH;
+    }
+
+    /**
+     * Get the number of slides in a packed move
+     * 
+     * @param code Packed move
+     * @return Number of slides
+     */
+    public static int numSlides(int code) {
+        return code & 3;
+    }
+
+    /**
+     * Get a slide from a packed move
+     * 
+     * @param code Packed move
+     * @param i    Index of the slide
+     * @return Packed slide action
+     */
+    public static int getSlide(int code, int i) {
+        return (code >>> (2 + i * SLIDE_BITS)) & ((1 << SLIDE_BITS) - 1);
+    }
+
+    /**
+     * Get the push from a packed move
+     * 
+     * @param code Packed move
+     * @return Packed push action
+     */
+    public static int getPush(int code) {
+        return (code >>> PUSH_SHIFT) & 127;
+    }
+
+    /**
+     * Rotate a packed move by 180 degrees, to map a move between a board and its rotation (see
+     * Bitboard.rotate). Each position i becomes 31 - i, and pushes reverse direction
+     * 
+     * @param code Packed move
+     * @return Packed move for the rotated board
+     */
+    public static int rotate(int code) {
+        int rotated = code & 3;
+        int slide;
+        for (int i = 0; i < numSlides(code); i++) {
+            slide = getSlide(code, i);
+            rotated |= ((31 - (slide & 31)) | ((31 - (slide >>> 5)) << 5)) << (2 + i * SLIDE_BITS);
+        }
+        if ((code & HAS_PUSH) != 0) {
+            int push = getPush(code);
+            rotated = withPush(rotated, (31 - (push & 31)) | ((pushDirIdx(push) ^ 1) << 5));
+        }
+        return rotated;
+    }
+
+    /**
+     * Perform a packed move on the given bitboard without validating it
+     * 
+     * @param code  Packed move known to be valid for the board
+     * @param board Bitboard to perform move on
+     */
+    public static void apply(int code, Bitboard board) {
+        int slide, push;
+        for (int i = 0; i < numSlides(code); i++) {
+            slide = getSlide(code, i);
+            board.slide(slideSrc(slide), slideDst(slide));
+        }
+        push = getPush(code);
+        board.makePush(pushSrc(push), pushDirIdx(push));
+    }
+
+    /**
+     * Attempt to perform a packed move on the given bitboard. If move is valid, update the board
+     * to reflect the move and return true. If the move is invalid on the given board, return false
+     * and don't change the board state.
+     * 
+     * @param code  Packed move
      * @param board Bitboard to attempt move on
      * @param turn  Turn indicator
      * @return true if move was performed, else false
      */
-    public boolean attempt(Bitboard board, int turn) {
-        if (actions.size() < 2) {
-            System.out.println("Why are you attempting a move of size " + actions.size() + "????");
+    public static boolean attempt(int code, Bitboard board, int turn) {
+        if ((code & HAS_PUSH) == 0) {
+            System.out.println("Why are you attempting a move without a push????");
+            return false;
         }
-        Bitboard initState = board.getState();
-        int numSlides = (actions.size() / 2) - 1;
-        int src, dst;
+        int numSlides = numSlides(code);
+        int slide, src, dst, push;
         for (int i = 0; i < numSlides; i++) {
-            src = actions.get(i * 2);
-            dst = actions.get((i * 2) + 1);
-            if (board.owns(src, turn) && board.isEmpty(dst)) {
+            slide = getSlide(code, i);
+            src = slideSrc(slide);
+            dst = slideDst(slide);
+            if (board.owns(src, turn) && board.isValid(dst) && board.isEmpty(dst)) {
                 board.slide(src, dst);
             } else {
-                board.restoreState(initState);
+                undoSlides(code, board, i);
                 return false;
             }
         }
-        src = actions.get(actions.size() - 2);
-        dst = actions.get(actions.size() - 1);
-        if (!BitboardUtils.isValidPush(board, src, (char) dst)) {
-            board.restoreState(initState);
+        push = getPush(code);
+        if (!BitboardUtils.isValidPush(board, pushSrc(push), pushDirIdx(push))) {
+            undoSlides(code, board, numSlides);
             return false;
         }
-        board.push(src, (char) dst);
+        board.makePush(pushSrc(push), pushDirIdx(push));
         return true;
     }
 
-    public void add(Integer action) {
-        actions.add(action);
+    /**
+     * Undo the first slides of a packed move, in reverse order
+     * 
+     * @param code      Packed move
+     * @param board     Bitboard the slides were made on
+     * @param numSlides Number of slides made
+     */
+    private static void undoSlides(int code, Bitboard board, int numSlides) {
+        int slide;
+        for (int i = numSlides - 1; i >= 0; i--) {
+            slide = getSlide(code, i);
+            board.slide(slideDst(slide), slideSrc(slide));
+        }
+    }
+
+    /**
+     * Attempt to perform move on the given bitboard. If move is valid, update the board to reflect
+     * the move and return true. If the move is invalid on the given board, return false and don't
+     * change the board state.
+     * 
+     * @param board Bitboard to attempt move on
+     * @param turn  Turn indicator
+     * @return true if move was performed, else false
+     */
+    public boolean attempt(Bitboard board, int turn) {
+        return attempt(code, board, turn);
+    }
+
+    /**
+     * Describe a packed move using board labels, e.g. "a3-b3 b4-d4 c5r" for two slides followed by
+     * a push to the right
+     * 
+     * @param code Packed move
+     * @return Human readable description of the move
+     */
+    public static String toString(int code) {
+        StringBuilder sb = new StringBuilder();
+        int slide;
+        for (int i = 0; i < numSlides(code); i++) {
+            slide = getSlide(code, i);
+            sb.append(label(slide & 31)).append('-').append(label(slide >>> 5)).append(' ');
+        }
+        if ((code & HAS_PUSH) != 0) {
+            int push = getPush(code);
+            sb.append(label(push & 31)).append(pushDir(push));
+        }
+        return sb.toString().trim();
     }
 
-    public void pop() {
-        actions.remove(actions.size() - 1);
+    /**
+     * Get the label of a position as shown on the board, a row letter followed by a column number
+     * 
+     * @param pos Position [0, 31]
+     * @return Label of the position
+     */
+    private static String label(int pos) {
+        return "" + (char) ('a' + pos / 8) + (pos % 8 + 1);
     }
 
-    public void clear() {
-        actions.clear();
+    @Override
+    public String toString() {
+        return toString(code);
     }
 
     @Override
     public int hashCode() {
-        return actions.hashCode();
+        return code;
     }
 
     @Override
@@ -86,6 +324,6 @@ public class Move {
             return false;
 
         Move other = (Move) obj;
-        return this.actions.equals(other.actions);
+        return this.code == other.code;
     }
 }
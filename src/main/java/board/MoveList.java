@@ -0,0 +1,67 @@
+package main.java.board;
+
+/**
+ * Reusable buffer of packed actions or moves (see Move for the encodings). Backed by a primitive
+ * int array that grows as needed and is kept between uses, so filling it doesn't allocate.
+ */
+public class MoveList {
+    private int[] moves;
+    private int size;
+
+    /**
+     * Initialize an empty MoveList
+     */
+    public MoveList() {
+        this(64);
+    }
+
+    /**
+     * Initialize an empty MoveList with the given starting capacity
+     * 
+     * @param capacity Number of moves the list can hold before it needs to grow
+     */
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Add a packed action or move to the end of the list
+     * 
+     * @param move Packed action or move
+     */
+    public void add(int move) {
+        if (size == moves.length) {
+            int[] grown = new int[moves.length * 2];
+            System.arraycopy(moves, 0, grown, 0, size);
+            moves = grown;
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Get the packed action or move at the given index
+     * 
+     * @param i Index into the list
+     * @return Packed action or move
+     */
+    public int get(int i) {
+        return moves[i];
+    }
+
+    /**
+     * Get the number of elements in the list
+     * 
+     * @return Size of the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the list, keeping its buffer for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+}
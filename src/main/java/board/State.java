@@ -2,20 +2,49 @@ package main.java.board;
 
 /**
  * A State class is simply a grouping of a Bitboard and a Move. The Move should signify it was the
- * move taken to reach the associated Bitboard.
+ * move taken to reach the associated Bitboard. Only the packed move is kept until the Move object
+ * is asked for, since most states are only ever looked at for their board.
  */
 public class State {
     public Bitboard board;
-    public Move move;
+    // packed move (see Move), or 0 if there is none
+    private final int code;
+    private Move move;
 
     public State(Bitboard board, Move move) {
         this.board = board;
-        this.move = new Move(move);
+        this.code = move.code;
+    }
+
+    public State(Bitboard board, int move) {
+        this.board = board;
+        this.code = move;
     }
 
     public State(Bitboard board) {
         this.board = board;
-        this.move = null;
+        this.code = 0;
+    }
+
+    /**
+     * Get the packed move taken to reach the board, without creating a Move
+     * 
+     * @return Packed move (see Move), or 0 if there is none
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Get the move taken to reach the board. The Move is created the first time it's asked for,
+     * and the same one is returned after that
+     * 
+     * @return Move taken to reach the board, or null if there is none
+     */
+    public Move getMove() {
+        if (move == null && code != 0)
+            move = new Move(code);
+        return move;
     }
 
     @Override
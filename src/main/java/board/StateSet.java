@@ -1,42 +1,158 @@
 package main.java.board;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
+import java.util.NoSuchElementException;
 
 /**
- * Class to group potential next states into different categories
+ * Class to group potential next states into different categories. Each category's states are kept
+ * in primitive buffers (packed boards, hashes and packed moves), so filling a StateSet allocates
+ * nothing per state. Bitboard and State objects are only built for the states that are asked for.
  */
 public class StateSet implements Iterable<State> {
+    // categories of states, in order of value
+    public static final int WINNING = 0;
+    public static final int CHECKMATE = 1;
+    public static final int NO_BORDER = 2;
+    public static final int OTHER = 3;
+    private static final int NUM_CATEGORIES = 4;
+
+    // states of each category, in the order they were added
+    private long[][] circles;
+    private long[][] squares;
+    private long[][] hashes;
+    private int[][] anchors;
+    private int[][] moves;
+    private int[] sizes;
+
+    public StateSet() {
+        circles = new long[NUM_CATEGORIES][];
+        squares = new long[NUM_CATEGORIES][];
+        hashes = new long[NUM_CATEGORIES][];
+        anchors = new int[NUM_CATEGORIES][];
+        moves = new int[NUM_CATEGORIES][];
+        for (int category = 0; category < NUM_CATEGORIES; category++) {
+            circles[category] = new long[8];
+            squares[category] = new long[8];
+            hashes[category] = new long[8];
+            anchors[category] = new int[8];
+            moves[category] = new int[8];
+        }
+        sizes = new int[NUM_CATEGORIES];
+    }
+
     /**
-     * States that contain winning moves
+     * Add a state to the given category. The board is copied, so it may change afterwards
+     * 
+     * @param board    Board of the state
+     * @param move     Packed move taken to reach the state (see Move)
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
      */
-    public Set<State> winningStates;
+    public void add(Bitboard board, int move, int category) {
+        add(board.getPackedCircles(), board.getPackedSquares(), board.getAnchor(), board.getHash(),
+                move, category);
+    }
+
     /**
-     * States that put your opponent into "checkmate"
+     * Add a state to the given category from its packed board
+     * 
+     * @param circles  Packed circles of the state
+     * @param squares  Packed squares of the state
+     * @param anchor   Bit mask of the anchored position of the state
+     * @param hash     Zobrist hash of the state
+     * @param move     Packed move taken to reach the state (see Move)
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
      */
-    public Set<State> checkmateStates;
+    public void add(long circles, long squares, int anchor, long hash, int move, int category) {
+        int size = sizes[category];
+        if (size == moves[category].length) {
+            this.circles[category] = Arrays.copyOf(this.circles[category], size * 2);
+            this.squares[category] = Arrays.copyOf(this.squares[category], size * 2);
+            hashes[category] = Arrays.copyOf(hashes[category], size * 2);
+            anchors[category] = Arrays.copyOf(anchors[category], size * 2);
+            moves[category] = Arrays.copyOf(moves[category], size * 2);
+        }
+        this.circles[category][size] = circles;
+        this.squares[category][size] = squares;
+        hashes[category][size] = hash;
+        anchors[category][size] = anchor;
+        moves[category][size] = move;
+        sizes[category]++;
+    }
+
     /**
-     * States that leave none of your own pieces on the border
+     * Get the total number of states
+     * 
+     * @return Number of states in every category
      */
-    public Set<State> noBorderStates;
+    public int size() {
+        int size = 0;
+        for (int category = 0; category < NUM_CATEGORIES; category++) {
+            size += sizes[category];
+        }
+        return size;
+    }
+
     /**
-     * All other states
+     * Get the number of states in the given category
+     * 
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
+     * @return Number of states in that category
      */
-    public Set<State> otherStates;
+    public int size(int category) {
+        return sizes[category];
+    }
 
-    public StateSet() {
-        this.winningStates = new HashSet<>();
-        this.checkmateStates = new HashSet<>();
-        this.noBorderStates = new HashSet<>();
-        this.otherStates = new HashSet<>();
+    /**
+     * Set a board to one of the states, without creating any objects
+     * 
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
+     * @param i        Index of the state within its category
+     * @param board    Bitboard to set
+     */
+    public void loadBoard(int category, int i, Bitboard board) {
+        board.restoreState(circles[category][i], squares[category][i], anchors[category][i],
+                hashes[category][i]);
+    }
+
+    /**
+     * Get a new Bitboard of one of the states
+     * 
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
+     * @param i        Index of the state within its category
+     * @return Bitboard of the state
+     */
+    public Bitboard getBoard(int category, int i) {
+        Bitboard board = new Bitboard();
+        loadBoard(category, i, board);
+        return board;
+    }
+
+    /**
+     * Get the move taken to reach one of the states
+     * 
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
+     * @param i        Index of the state within its category
+     * @return Packed move (see Move)
+     */
+    public int getMove(int category, int i) {
+        return moves[category][i];
+    }
+
+    /**
+     * Get one of the states along with the move taken to reach it
+     * 
+     * @param category One of WINNING, CHECKMATE, NO_BORDER or OTHER
+     * @param i        Index of the state within its category
+     * @return State of the board and move
+     */
+    public State getState(int category, int i) {
+        return new State(getBoard(category, i), moves[category][i]);
     }
 
     @Override
     public Iterator<State> iterator() {
-        return new StateSetIterator(this);
+        return new StateSetIterator();
     }
 
     /**
@@ -44,37 +160,24 @@ public class StateSet implements Iterable<State> {
      * according to the groups
      */
     private class StateSetIterator implements Iterator<State> {
-        /**
-         * Private list of iterators for each group
-         */
-        private List<Iterator<State>> its = new ArrayList<>();
-
-        public StateSetIterator(StateSet stateSet) {
-            // add each group's iterator to iterator list, in order of value
-            its.add(winningStates.iterator());
-            its.add(checkmateStates.iterator());
-            its.add(noBorderStates.iterator());
-            its.add(otherStates.iterator());
-        }
+        private int category = 0;
+        private int idx = 0;
 
         @Override
         public boolean hasNext() {
-            // return true if any of the iterators' hasNext() is true
-            while (its.size() > 0) {
-                if (its.get(0).hasNext())
-                    return true;
-                // discard any empty iterators
-                its.remove(0);
+            // move on past any used up categories
+            while (category < NUM_CATEGORIES && idx == sizes[category]) {
+                category++;
+                idx = 0;
             }
-            return false;
+            return category < NUM_CATEGORIES;
         }
 
         @Override
         public State next() {
-            // return the next iterator value
             if (!hasNext())
-                return null;
-            return its.get(0).next();
+                throw new NoSuchElementException();
+            return getState(category, idx++);
         }
     }
 }
@@ -0,0 +1,69 @@
+package main.java.board;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys used to maintain a 64-bit Zobrist hash of a Bitboard. The hash of a board is the XOR
+ * of the key of every piece at its position and the key of the anchored position, so it can be
+ * updated incrementally as pieces move.
+ */
+public class Zobrist {
+    /**
+     * Keys for each piece type at each position. Piece types are indexed the same way as the
+     * bitboards: p1 circles, p1 squares, p2 circles, p2 squares
+     */
+    private static final long[][] pieceKeys = new long[4][32];
+    /**
+     * Keys for the anchor at each position
+     */
+    private static final long[] anchorKeys = new long[32];
+    static {
+        // fixed seed so that hashes are reproducible between runs
+        SplittableRandom rand = new SplittableRandom(0x5EEDL);
+        for (int idx = 0; idx < 32; idx++) {
+            for (int bIdx = 0; bIdx < 4; bIdx++) {
+                pieceKeys[bIdx][idx] = rand.nextLong();
+            }
+            anchorKeys[idx] = rand.nextLong();
+        }
+    }
+
+    /**
+     * Get the key of a single piece
+     * 
+     * @param bIdx    Index of the piece's bitboard
+     * @param posMask Bit mask of the piece's position
+     * @return Key of the piece at the given position
+     */
+    public static long piece(int bIdx, int posMask) {
+        return pieceKeys[bIdx][Integer.numberOfTrailingZeros(posMask)];
+    }
+
+    /**
+     * Get the combined key of every piece in a bitboard
+     * 
+     * @param bIdx  Index of the bitboard
+     * @param board Bitboard of pieces of that type
+     * @return XOR of the keys of every piece in the bitboard
+     */
+    public static long pieces(int bIdx, int board) {
+        long key = 0;
+        while (board != 0) {
+            key ^= pieceKeys[bIdx][Integer.numberOfTrailingZeros(board)];
+            board &= board - 1;
+        }
+        return key;
+    }
+
+    /**
+     * Get the key of the anchor
+     * 
+     * @param anchorMask Bit mask of the anchored position, or 0 if there is no anchor
+     * @return Key of the anchor, or 0 if there is no anchor
+     */
+    public static long anchor(int anchorMask) {
+        if (anchorMask == 0)
+            return 0;
+        return anchorKeys[Integer.numberOfTrailingZeros(anchorMask)];
+    }
+}
@@ -12,6 +12,7 @@ import main.java.agents.alphaBeta.AlphaBetaAgent;
 import main.java.board.Bitboard;
 import main.java.util.BitboardUtils;
 import main.java.util.NumberUtils;
+import main.java.util.RepetitionTracker;
 import main.java.util.SuccessorUtils;
 
 /**
@@ -22,7 +23,7 @@ public class BranchingAnalysis {
     private int turn;
     private Agent a1 = new AlphaBetaAgent(AlphaBetaAgent.ABType.STOCHASTIC);
     private Agent a2 = new AlphaBetaAgent(AlphaBetaAgent.ABType.STOCHASTIC);
-    private Map<Bitboard, Integer> stateToNum = new HashMap<>();
+    private RepetitionTracker repetitions = new RepetitionTracker();
     private Map<Integer, List<Integer>> playerToBranches = new HashMap<>();
 
     /**
@@ -78,7 +79,7 @@ public class BranchingAnalysis {
         a2.newGame(1);
         board.reset();
         BitboardUtils.skipSetup(board);
-        stateToNum.clear();
+        repetitions.clear();
         Set<Bitboard> nextStates;
         while (true) {
             // record branching factor for this player
@@ -86,19 +87,18 @@ public class BranchingAnalysis {
             playerToBranches.get(turn).add(nextStates.size());
             // also check every next state and record it's branching factor
             for (Bitboard nextState : nextStates) {
-                playerToBranches.get(1 - turn).add(SuccessorUtils.getNextStates(nextState).size());
+                playerToBranches.get(1 - turn).add(SuccessorUtils.countNextStates(nextState));
             }
 
             // make move
             makeMove(turn);
-            count = stateToNum.getOrDefault(board, 0);
-            stateToNum.put(board, count + 1);
+            count = repetitions.add(board);
 
             if (BitboardUtils.checkWinner(board) != -1) {
                 return;
             }
             // detect fifth time repeating a board state, call it a tie
-            if (count >= 5) {
+            if (count >= RepetitionTracker.TIE_REPEATS) {
                 return;
             }
             // change turns
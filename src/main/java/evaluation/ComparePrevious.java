@@ -7,6 +7,7 @@ import main.java.agents.alphaBeta.AlphaBetaAgent;
 import main.java.genetics.strategy.CoevolutionSplitRef;
 import main.java.genetics.strategy.CoopCoevolutionSplit;
 import main.java.genetics.strategy.CoopCoevolutionSplitRef;
+import main.java.util.CacheSetup;
 
 /**
  * Used to compare the old weights of a particular evolution strategy to new ones
@@ -50,11 +51,13 @@ public class ComparePrevious {
 
                 System.out.print("Number of games: ");
                 int numGames = Integer.parseInt(scan.nextLine().trim());
+                CacheSetup.promptCaches(scan);
 
                 System.out.println("New values playing as Player 1:");
                 Evaluation.evalAgents(a1, a2, numGames);
                 System.out.println("New values playing as Player 2:");
                 Evaluation.evalAgents(a2, a1, numGames);
+                CacheSetup.reportCaches();
 
                 scan.close();
         }
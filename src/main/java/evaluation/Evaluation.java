@@ -13,6 +13,7 @@ import main.java.genetics.strategy.CoevolutionSplitRef;
 import main.java.genetics.strategy.CoopCoevolution;
 import main.java.genetics.strategy.CoopCoevolutionSplit;
 import main.java.genetics.strategy.CoopCoevolutionSplitRef;
+import main.java.util.CacheSetup;
 import main.java.util.NumberUtils;
 
 import static main.java.agents.alphaBeta.AlphaBetaAgent.ABType;
@@ -31,9 +32,11 @@ public class Evaluation {
         // choose number of games
         System.out.print("Number of games: ");
         int numGames = Integer.parseInt(scan.nextLine().trim());
+        CacheSetup.promptCaches(scan);
 
         evalAgents(p1, p2, numGames);
         evalAgents(p2, p1, numGames);
+        CacheSetup.reportCaches();
 
         scan.close();
     }
@@ -0,0 +1,177 @@
+package main.java.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import main.java.board.Bitboard;
+import main.java.board.State;
+import main.java.util.BitboardUtils;
+import main.java.util.NumberUtils;
+import main.java.util.SuccessorUtils;
+
+/**
+ * Move generation benchmark and correctness check. Counts the distinct successor states reachable
+ * in a given number of turns (perft), optionally broken down by first move, and reports the
+ * throughput. The first moves are searched in parallel on a fork-join pool.
+ */
+public class Perft {
+    /**
+     * Known perft counts from the starting position, indexed by depth
+     */
+    private static final long[] KNOWN_COUNTS = {1, 1514, 2484075};
+
+    /**
+     * Prompt for a depth, a position and whether to divide by first move, then run perft
+     */
+    public Perft() {
+        Scanner scan = new Scanner(System.in);
+        System.out.print("Enter depth: ");
+        int depth = Integer.parseInt(scan.nextLine().trim());
+
+        System.out.println("Enter position as p1 circles, p1 squares, p2 circles, p2 squares, "
+                + "anchor (as printed by Bitboard.repr)");
+        System.out.print("or leave blank for the starting position: ");
+        Bitboard board = parsePosition(scan.nextLine().trim());
+
+        System.out.print("Divide by first move? (y/n): ");
+        boolean divide = scan.nextLine().trim().toLowerCase().startsWith("y");
+        scan.close();
+
+        board.show();
+        run(board, depth, divide);
+    }
+
+    /**
+     * Parse a position in the format printed by Bitboard.repr
+     * 
+     * @param line Five integers separated by commas or whitespace, or blank for the starting
+     *             position
+     * @return The parsed board
+     */
+    private Bitboard parsePosition(String line) {
+        Bitboard board = new Bitboard();
+        if (line.isEmpty()) {
+            BitboardUtils.skipSetup(board);
+            return board;
+        }
+        String[] parts = line.split("[,\\s]+");
+        if (parts.length != 5) {
+            System.out.println("Expected 5 numbers, using the starting position instead");
+            BitboardUtils.skipSetup(board);
+            return board;
+        }
+        int[] bitboards = new int[5];
+        for (int i = 0; i < 5; i++) {
+            bitboards[i] = Integer.parseInt(parts[i]);
+        }
+        return new Bitboard(bitboards);
+    }
+
+    /**
+     * Run perft from the given board, splitting the first moves across a fork-join pool, and print
+     * the results
+     * 
+     * @param board  Board to start from
+     * @param depth  Number of turns to search
+     * @param divide Whether to print the count below each first move
+     * @return Number of states at the given depth
+     */
+    public static long run(Bitboard board, int depth, boolean divide) {
+        long start = System.nanoTime();
+        long nodes = 0;
+        if (depth == 0 || BitboardUtils.checkWinner(board) != -1) {
+            nodes = perft(board, depth);
+        } else {
+            List<State> firstMoves = new ArrayList<>(SuccessorUtils.getSuccessors(board));
+            firstMoves.sort((a, b) -> a.getMove().toString().compareTo(b.getMove().toString()));
+            ForkJoinPool pool = new ForkJoinPool();
+            List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+            for (State state : firstMoves) {
+                tasks.add(pool.submit(() -> perft(state.board, depth - 1)));
+            }
+            long count;
+            for (int i = 0; i < firstMoves.size(); i++) {
+                count = tasks.get(i).join();
+                if (divide)
+                    System.out.println(firstMoves.get(i).getMove() + ": " + count);
+                nodes += count;
+            }
+            pool.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("perft(" + depth + ") = " + nodes);
+        System.out.println("Time: " + NumberUtils.round(seconds, 3) + " s ("
+                + Math.round(nodes / seconds) + " nodes/s)");
+        return nodes;
+    }
+
+    /**
+     * Count the distinct successor states reachable from the given board in the given number of
+     * turns. Won positions have no successors
+     * 
+     * @param board Board to start from
+     * @param depth Number of turns to search
+     * @return Number of states at the given depth
+     */
+    public static long perft(Bitboard board, int depth) {
+        if (depth == 0)
+            return 1;
+        if (BitboardUtils.checkWinner(board) != -1)
+            return 0;
+        if (depth == 1)
+            return SuccessorUtils.countNextStates(board);
+        long nodes = 0;
+        for (Bitboard child : SuccessorUtils.getNextStates(board)) {
+            nodes += perft(child, depth - 1);
+        }
+        return nodes;
+    }
+
+    /**
+     * Check move generation against the known perft counts from the starting position. Every
+     * count is taken both with the eager successor search and with the lazy successor iterator
+     * used by the alpha-beta agents, so the two can't drift apart
+     * 
+     * @return true if every count matched, else false
+     */
+    public static boolean check() {
+        Bitboard board = new Bitboard();
+        BitboardUtils.skipSetup(board);
+        boolean ok = true;
+        long count, iterated;
+        for (int depth = 0; depth < KNOWN_COUNTS.length; depth++) {
+            count = perft(board, depth);
+            iterated = iteratedPerft(board, depth, 0);
+            boolean match = count == KNOWN_COUNTS[depth] && iterated == KNOWN_COUNTS[depth];
+            System.out.println("perft(" + depth + ") = " + count + ", iterated " + iterated
+                    + ", expected " + KNOWN_COUNTS[depth] + (match ? " ok" : " MISMATCH"));
+            ok &= match;
+        }
+        return ok;
+    }
+
+    /**
+     * Count the distinct successor states reachable from the given board in the given number of
+     * turns, finding successors with the lazy successor iterator
+     * 
+     * @param board Board to start from
+     * @param depth Number of turns to search
+     * @param ply   Number of turns already searched
+     * @return Number of states at the given depth
+     */
+    private static long iteratedPerft(Bitboard board, int depth, int ply) {
+        if (depth == 0)
+            return 1;
+        if (BitboardUtils.checkWinner(board) != -1)
+            return 0;
+        long nodes = 0;
+        for (Bitboard child : SuccessorUtils.iterateNextStates(board, ply)) {
+            nodes += iteratedPerft(child, depth - 1, ply + 1);
+        }
+        return nodes;
+    }
+}
@@ -1,11 +1,9 @@
 package main.java.game;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import main.java.agents.Agent;
 import main.java.board.Bitboard;
 import main.java.util.BitboardUtils;
+import main.java.util.RepetitionTracker;
 
 public class AgentGame {
     private Bitboard board;
@@ -14,7 +12,7 @@ public class AgentGame {
     private boolean show;
     public int numTurns;
 
-    private Map<Bitboard, Integer> stateToNum;
+    private RepetitionTracker repetitions;
 
     /**
      * Perform a fully automated game between two agents
@@ -38,7 +36,7 @@ public class AgentGame {
         BitboardUtils.skipSetup(board);
         if (show)
             board.show();
-        stateToNum = new HashMap<>();
+        repetitions = new RepetitionTracker();
     }
 
     /**
@@ -51,15 +49,14 @@ public class AgentGame {
             if (show)
                 board.show();
             numTurns++;
-            count = stateToNum.getOrDefault(board, 0);
-            stateToNum.put(board, count + 1);
+            count = repetitions.add(board);
 
             winner = BitboardUtils.checkWinner(board);
             if (winner != -1) {
                 return winner;
             }
             // detect fifth time repeating a board state, call it a tie
-            if (count >= 5) {
+            if (count >= RepetitionTracker.TIE_REPEATS) {
                 return -1;
             }
             // change turns
@@ -8,6 +8,7 @@ import main.java.genetics.strategy.CoevolutionSplitRef;
 import main.java.genetics.strategy.CoopCoevolution;
 import main.java.genetics.strategy.CoopCoevolutionSplit;
 import main.java.genetics.strategy.CoopCoevolutionSplitRef;
+import main.java.util.CacheSetup;
 import main.java.util.HeuristicUtils;
 
 public class Evolution {
@@ -48,6 +49,8 @@ public class Evolution {
         System.out.print("Population size: ");
         int size = Integer.parseInt(scan.nextLine());
 
+        CacheSetup.promptCaches(scan);
+
         switch (type) {
             case 1:
                 new Coevolution(time, size, num);
@@ -68,6 +71,7 @@ public class Evolution {
                 new CoopCoevolutionSplitRef(time, size);
                 break;
         }
+        CacheSetup.reportCaches();
         scan.close();
     }
 }
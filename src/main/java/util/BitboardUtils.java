@@ -1,7 +1,5 @@
 package main.java.util;
 
-import java.util.List;
-
 import main.java.board.Bitboard;
 import main.java.board.BitMasks;
 
@@ -55,31 +53,31 @@ public class BitboardUtils {
         int theirCircles = board.getCircles(1 - turn);
         int theirSquares = board.getSquares(1 - turn);
         int theirPieces = (theirCircles | theirSquares);
-        for (List<Integer> pattern : BitMasks.circleCheckmatePatterns) {
+        for (int[] pattern : BitMasks.circleCheckmatePatterns) {
             // their circle must be in proper position
-            if ((pattern.get(0) & theirCircles) != pattern.get(0))
+            if ((pattern[0] & theirCircles) != pattern[0])
                 continue;
             // my square must be in proper position
-            if ((pattern.get(1) & mySquares) != pattern.get(1))
+            if ((pattern[1] & mySquares) != pattern[1])
                 continue;
             // my pieces must be in other positions
-            if ((pattern.get(2) & myPieces) != pattern.get(2))
+            if ((pattern[2] & myPieces) != pattern[2])
                 continue;
             // pattern matches!
             return true;
         }
-        for (List<Integer> pattern : BitMasks.squareCheckmatePatterns) {
+        for (int[] pattern : BitMasks.squareCheckmatePatterns) {
             // their any piece must be in proper position (square checkmates work against circles)
-            if ((pattern.get(0) & theirPieces) != pattern.get(0))
+            if ((pattern[0] & theirPieces) != pattern[0])
                 continue;
             // their pieces must be in other positions
-            if ((pattern.get(1) & theirPieces) != pattern.get(1))
+            if ((pattern[1] & theirPieces) != pattern[1])
                 continue;
             // my square must be in proper position
-            if ((pattern.get(2) & mySquares) != pattern.get(2))
+            if ((pattern[2] & mySquares) != pattern[2])
                 continue;
             // my pieces must be in other positions
-            if ((pattern.get(3) & myPieces) != pattern.get(3))
+            if ((pattern[3] & myPieces) != pattern[3])
                 continue;
             // pattern matches!
             return true;
@@ -129,32 +127,7 @@ public class BitboardUtils {
      * @return Bit mask with valid destinations set to 1
      */
     public static int findSlideDests(Bitboard board, int posMask) {
-        int dests = 0;
-        int queue = 0;
-        int visited = 0;
-
-        queue |= BitMasks.orthogonal.get(posMask);
-        int nextMask;
-        while (queue != 0) {
-            // get the next position off the queue
-            nextMask = queue & ~(queue - 1);
-            queue ^= nextMask;
-
-            if ((nextMask & visited) != 0)
-                continue;
-            visited |= nextMask;
-
-            if (!board.isValid(nextMask))
-                continue;
-
-            if (board.isEmpty(nextMask))
-                dests |= nextMask;
-            else
-                continue;
-
-            queue |= BitMasks.orthogonal.get(nextMask);
-        }
-        return dests;
+        return FloodFill.slideDests(posMask, BitMasks.valid & ~board.getPieces());
     }
 
     /**
@@ -236,25 +209,32 @@ public class BitboardUtils {
      * @return true if push is valid, else false
      */
     public static boolean isValidPush(Bitboard board, int posMask, char dir) {
+        return isValidPush(board, posMask, GameUtils.dirToIdx(dir));
+    }
+
+    /**
+     * Validate if a push in a given direction is valid
+     * 
+     * @param board   Board to analyze
+     * @param posMask Location of pushing piece
+     * @param dirIdx  Direction index of push (see GameUtils.DIRECTIONS)
+     * @return true if push is valid, else false
+     */
+    public static boolean isValidPush(Bitboard board, int posMask, int dirIdx) {
         // pushing piece must be square
         if (!board.isSquare(posMask))
             return false;
 
-        // next immediate piece must be valid and non-empty
-        posMask = updateMask(posMask, dir);
-        if (!board.isValid(posMask) || board.isEmpty(posMask))
-            return false;
+        // find the line of pieces in front of the pusher, up to the first empty position
+        int ray = BitMasks.pushRays[dirIdx][BitMasks.idx(posMask)];
+        int gap = BitMasks.first(ray & ~board.getPieces(), dirIdx);
+        int line = BitMasks.before(ray, gap, dirIdx);
 
-        // check the pieces in a line
-        while (board.isValid(posMask)) {
-            if (board.isEmpty(posMask))
-                return true;
-            if (board.isAnchored(posMask))
-                return false;
-            posMask = updateMask(posMask, dir);
-        }
-        // updateMask got pushed off an invalid edge, so push is invalid
-        if (posMask == 0)
+        // next immediate piece must be valid and non-empty, and nothing in the line anchored
+        if (line == 0 || (line & board.getAnchor()) != 0)
+            return false;
+        // a full line can't be pushed against a rail
+        if (gap == 0 && (BitMasks.railEnds[dirIdx] & posMask) != 0)
             return false;
         return true;
     }
@@ -0,0 +1,48 @@
+package main.java.util;
+
+import java.util.Scanner;
+
+import main.java.board.Heuristic;
+
+/**
+ * Lets the evaluation and evolution tools size the shared caches from the console, and report how
+ * well they did once the run is over
+ */
+public class CacheSetup {
+    /**
+     * Ask for memory budgets for the successor and evaluation caches, and install each one given
+     * 
+     * @param scan Scanner reading the console
+     */
+    public static void promptCaches(Scanner scan) {
+        long successorBudget = promptMegabytes(scan, "Successor cache size in MB (0 for none): ");
+        SuccessorUtils.setCache(successorBudget > 0 ? new SuccessorCache(successorBudget) : null);
+        long evaluationBudget = promptMegabytes(scan, "Evaluation cache size in MB (0 for none): ");
+        Heuristic.setCache(evaluationBudget > 0 ? new EvaluationCache(evaluationBudget) : null);
+    }
+
+    /**
+     * Print the size and hit rate of each cache in use
+     */
+    public static void reportCaches() {
+        SuccessorCache successorCache = SuccessorUtils.getCache();
+        if (successorCache != null)
+            System.out.println(successorCache);
+        EvaluationCache evaluationCache = Heuristic.getCache();
+        if (evaluationCache != null)
+            System.out.println(evaluationCache);
+    }
+
+    /**
+     * Ask for a size in megabytes. A blank answer counts as 0
+     * 
+     * @param scan   Scanner reading the console
+     * @param prompt Prompt to print
+     * @return Size in bytes
+     */
+    private static long promptMegabytes(Scanner scan, String prompt) {
+        System.out.print(prompt);
+        String line = scan.nextLine().trim();
+        return line.isEmpty() ? 0 : Long.parseLong(line) << 20;
+    }
+}
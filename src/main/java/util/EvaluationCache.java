@@ -0,0 +1,228 @@
+package main.java.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import main.java.board.Bitboard;
+import main.java.board.Heuristic;
+
+/**
+ * Fixed-size cache of heuristic evaluations, safe to share between threads without locking. Each
+ * evaluation is keyed by the position's Zobrist hash mixed with the identity of the Heuristic's
+ * weights (see Heuristic.getIdentity), so heuristics with different weights can share one cache.
+ * 
+ * Entries live in two-way buckets: a new evaluation goes in the bucket's first slot, moving the
+ * one there to the second slot. Each slot is a pair of longs, the evaluation's bits and the key
+ * XORed with those bits. Two threads writing the same slot at once can leave a pair that doesn't
+ * belong together, but then the key read back won't match, so a torn entry is only ever a miss.
+ */
+public class EvaluationCache {
+    /**
+     * Number of bytes used by each slot: the checked key and the evaluation
+     */
+    private static final int SLOT_BYTES = 16;
+
+    // key XOR evaluation bits, and evaluation bits, for each slot
+    private final long[] checks;
+    private final long[] values;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Initialize an empty EvaluationCache
+     * 
+     * @param bytes Roughly how many bytes the cache may take up, rounded down to a power of two
+     *              number of slots (at least two)
+     */
+    public EvaluationCache(long bytes) {
+        long slots = Long.highestOneBit(Math.max(bytes / SLOT_BYTES, 2));
+        // keep the arrays within what Java can index
+        slots = Math.min(slots, 1 << 30);
+        checks = new long[(int) slots];
+        values = new long[(int) slots];
+        mask = (int) slots - 1;
+    }
+
+    /**
+     * Evaluate the given board with the given heuristic, using the cached evaluation if there is
+     * one
+     * 
+     * @param board     Board to evaluate
+     * @param heuristic Heuristic to evaluate it with
+     * @return The heuristic evaluation of the board
+     */
+    public double evaluate(Bitboard board, Heuristic heuristic) {
+        long key = key(board.getHash(), heuristic.getIdentity());
+        double evaluation = find(key);
+        if (!Double.isNaN(evaluation))
+            return evaluation;
+        return store(key, heuristic.evaluate(board));
+    }
+
+    /**
+     * Evaluate the given board with the given heuristic and already known positional terms (see
+     * Heuristic.position()), using the cached evaluation if there is one. Otherwise the evaluation
+     * may stop early once it can't land inside the given search window, in which case only a bound
+     * is found and nothing is cached
+     * 
+     * @param board      Board to evaluate
+     * @param heuristic  Heuristic to evaluate it with
+     * @param p1Position Strength of p1's piece positions on the board
+     * @param p2Position Strength of p2's piece positions on the board
+     * @param alpha      Lower end of the search window
+     * @param beta       Upper end of the search window
+     * @return The heuristic evaluation of the board if it's inside (alpha, beta), otherwise the
+     *         evaluation or a bound on it outside the window
+     */
+    public double evaluate(Bitboard board, Heuristic heuristic, double p1Position,
+            double p2Position, double alpha, double beta) {
+        long key = key(board.getHash(), heuristic.getIdentity());
+        double evaluation = find(key);
+        if (!Double.isNaN(evaluation))
+            return evaluation;
+        evaluation = heuristic.evaluate(board, p1Position, p2Position, alpha, beta);
+        // only an evaluation inside the window is sure not to be a bound
+        if (alpha < evaluation && evaluation < beta)
+            store(key, evaluation);
+        return evaluation;
+    }
+
+    /**
+     * Look for the evaluation with the given key, counting a hit or a miss. Each slot is read
+     * once, so the evaluation returned is the one whose check matched
+     * 
+     * @param key Cache key of the evaluation
+     * @return The cached evaluation, or NaN if it isn't cached
+     */
+    private double find(long key) {
+        int slot = bucket(key);
+        long value = values[slot];
+        if ((checks[slot] ^ value) == key) {
+            hits.increment();
+            return Double.longBitsToDouble(value);
+        }
+        value = values[slot + 1];
+        if ((checks[slot + 1] ^ value) == key) {
+            hits.increment();
+            return Double.longBitsToDouble(value);
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Store an evaluation in the first slot of its bucket, moving the entry there to the second
+     * 
+     * @param key        Cache key of the evaluation
+     * @param evaluation Evaluation to store
+     * @return The evaluation stored
+     */
+    private double store(long key, double evaluation) {
+        int slot = bucket(key);
+        long bits = Double.doubleToRawLongBits(evaluation);
+        // move the first slot's entry down to make room
+        values[slot + 1] = values[slot];
+        checks[slot + 1] = checks[slot];
+        values[slot] = bits;
+        checks[slot] = key ^ bits;
+        return evaluation;
+    }
+
+    /**
+     * Get the first slot of the bucket the given key falls into
+     * 
+     * @param key Cache key of an evaluation
+     * @return Index of the bucket's first slot
+     */
+    private int bucket(long key) {
+        return (int) (key ^ (key >>> 32)) & mask & ~1;
+    }
+
+    /**
+     * Combine a position's hash with a heuristic's identity into a cache key
+     * 
+     * @param hash     Zobrist hash of the position
+     * @param identity Identity of the heuristic's weights
+     * @return Cache key, never 0 (the key of an empty slot)
+     */
+    private static long key(long hash, long identity) {
+        long key = hash ^ (identity * 0x9E3779B97F4A7C15L);
+        return key == 0 ? 1 : key;
+    }
+
+    /**
+     * Empty the cache and reset its counters. Evaluations being stored by other threads at the
+     * same time may survive
+     */
+    public void clear() {
+        for (int i = 0; i < checks.length; i++) {
+            checks[i] = 0;
+            values[i] = 0;
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Count the slots holding an evaluation. This scans the whole cache, so it's meant for
+     * reporting rather than for use during a search
+     * 
+     * @return Number of cached evaluations
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < checks.length; i++) {
+            if ((checks[i] | values[i]) != 0)
+                size++;
+        }
+        return size;
+    }
+
+    /**
+     * Get the number of evaluations the cache can hold
+     * 
+     * @return Number of slots
+     */
+    public int capacity() {
+        return checks.length;
+    }
+
+    /**
+     * Get the number of bytes taken up by the cache's slots
+     * 
+     * @return Bytes used
+     */
+    public long getBytes() {
+        return (long) SLOT_BYTES * checks.length;
+    }
+
+    /**
+     * Get the number of evaluations answered from the cache
+     * 
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of evaluations that had to be computed
+     * 
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long lookups = getHits() + getMisses();
+        double hitRate = lookups == 0 ? 0 : (double) getHits() / lookups;
+        int size = size();
+        return "Evaluation cache: " + size + "/" + capacity() + " evaluations ("
+                + NumberUtils.round(100.0 * size / capacity(), 1) + "% full), "
+                + getBytes() / 1024 + " KB, " + getHits() + " hits, " + getMisses()
+                + " misses (" + NumberUtils.round(hitRate * 100, 1) + "% hit rate)";
+    }
+}
@@ -0,0 +1,91 @@
+package main.java.util;
+
+import main.java.board.BitMasks;
+
+/**
+ * Bit-parallel flood fill over the 4x8 grid of bits used by the bitboards. Instead of exploring one
+ * position at a time, each step expands the whole frontier by shifting it one row up and down and
+ * one column left and right.
+ */
+public class FloodFill {
+    /**
+     * Everything except the left-most column, to stop shifts from wrapping onto the next row
+     */
+    private static final int notLeftCol = ~0x01010101;
+    /**
+     * Everything except the right-most column, to stop shifts from wrapping onto the previous row
+     */
+    private static final int notRightCol = ~0x80808080;
+
+    /**
+     * Get the valid positions orthogonally connected to any position in the given mask
+     * 
+     * @param mask Bit mask of positions
+     * @return Bit mask of their valid neighbours (which may overlap the given mask)
+     */
+    public static int neighbours(int mask) {
+        return (((mask << 1) & notLeftCol) | ((mask >>> 1) & notRightCol) | (mask << 8)
+                | (mask >>> 8)) & BitMasks.valid;
+    }
+
+    /**
+     * Get the valid positions orthogonally or diagonally adjacent to a position
+     * 
+     * @param posMask Bit mask of the position
+     * @return Bit mask of the (up to eight) positions around it
+     */
+    public static int surrounding(int posMask) {
+        int row = posMask | ((posMask << 1) & notLeftCol) | ((posMask >>> 1) & notRightCol);
+        return (row | (row << 8) | (row >>> 8)) & BitMasks.valid & ~posMask;
+    }
+
+    /**
+     * Find every position reachable from the seed positions by moving orthogonally through
+     * passable positions
+     * 
+     * @param seed     Bit mask of starting positions
+     * @param passable Bit mask of positions that may be moved through
+     * @return Bit mask of all reachable passable positions (seed positions that aren't passable are
+     *         left out)
+     */
+    public static int fill(int seed, int passable) {
+        int region = seed & passable;
+        int frontier = region;
+        while (frontier != 0) {
+            frontier = neighbours(frontier) & passable & ~region;
+            region |= frontier;
+        }
+        return region;
+    }
+
+    /**
+     * Find the empty positions a piece at the given position can slide to
+     * 
+     * @param posMask Position of the piece
+     * @param empty   Bit mask of empty positions
+     * @return Bit mask of valid slide destinations
+     */
+    public static int slideDests(int posMask, int empty) {
+        return fill(neighbours(posMask), empty);
+    }
+
+    /**
+     * Determine the "owner" of an empty connected component, the player with more pieces bordering
+     * it
+     * 
+     * @param region   Bit mask of the empty connected component
+     * @param p1Pieces Bit mask of p1's pieces
+     * @param p2Pieces Bit mask of p2's pieces
+     * @return 0 or 1 for the owning player, -1 if neither player borders it with more pieces
+     */
+    public static int owner(int region, int p1Pieces, int p2Pieces) {
+        int border = neighbours(region);
+        int p1Adj = Integer.bitCount(border & p1Pieces);
+        int p2Adj = Integer.bitCount(border & p2Pieces);
+        if (p1Adj > p2Adj)
+            return 0;
+        if (p2Adj > p1Adj)
+            return 1;
+        return -1;
+    }
+}
@@ -6,6 +6,27 @@ public class GameUtils {
     public static final int NUM_SLIDES = 2;
     public static final char[] DIRECTIONS = {'r', 'l', 'u', 'd'};
 
+    /**
+     * Converts a direction into its index in DIRECTIONS
+     * 
+     * @param dir Direction (r|l|u|d)
+     * @return Index [0, 3] of the direction, or -1 if it isn't a direction
+     */
+    public static int dirToIdx(char dir) {
+        switch (dir) {
+            case 'r':
+                return 0;
+            case 'l':
+                return 1;
+            case 'u':
+                return 2;
+            case 'd':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
     /**
      * Converts a change in position into a direction of that change. The two given positions must
      * be orthogonally connected
@@ -0,0 +1,127 @@
+package main.java.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of longs backed by primitive arrays with open addressing (linear probing), for deduplicating
+ * packed keys without boxing. Like BoardSet, every slot is stamped with the generation it was
+ * filled in, so clearing the set just starts a new generation.
+ */
+public class LongSet {
+    private long[] keys;
+    private int[] stamps;
+    private int generation;
+    private int mask;
+    private int size;
+
+    /**
+     * Initialize an empty LongSet with room for roughly the given number of keys before it needs
+     * to grow
+     * 
+     * @param capacity Expected number of keys
+     */
+    public LongSet(int capacity) {
+        allocate(Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2);
+        generation = 1;
+    }
+
+    /**
+     * Allocate empty tables with the given number of slots
+     * 
+     * @param slots Number of slots, a power of two
+     */
+    private void allocate(int slots) {
+        keys = new long[slots];
+        stamps = new int[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Find the slot holding the given key, or the empty slot where it belongs
+     * 
+     * @param key Key to look for
+     * @return Index of the slot
+     */
+    private int find(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+        while (stamps[slot] == generation) {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Check whether the set contains the given key
+     * 
+     * @param key Key to look for
+     * @return true if the key is in the set, else false
+     */
+    public boolean contains(long key) {
+        return stamps[find(key)] == generation;
+    }
+
+    /**
+     * Add the given key to the set
+     * 
+     * @param key Key to add
+     * @return true if the key was added, false if it was already in the set
+     */
+    public boolean add(long key) {
+        int slot = find(key);
+        if (stamps[slot] == generation)
+            return false;
+        // keep the table at most half full
+        if ((size + 1) << 1 > stamps.length) {
+            grow();
+            slot = find(key);
+        }
+        keys[slot] = key;
+        stamps[slot] = generation;
+        size++;
+        return true;
+    }
+
+    /**
+     * Double the number of slots, moving over the keys of the current generation
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldStamps = stamps;
+        int oldGeneration = generation;
+        allocate(oldStamps.length << 1);
+        generation = 1;
+        int slot;
+        for (int i = 0; i < oldStamps.length; i++) {
+            if (oldStamps[i] != oldGeneration)
+                continue;
+            slot = find(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            stamps[slot] = generation;
+        }
+    }
+
+    /**
+     * Get the number of keys in the set
+     * 
+     * @return Size of the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the set in constant time, keeping its tables for reuse
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // stamps have wrapped around, so old stamps could look current again
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+}
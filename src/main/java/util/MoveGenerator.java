@@ -0,0 +1,307 @@
+package main.java.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import main.java.board.Bitboard;
+import main.java.board.BitMasks;
+import main.java.board.BoardSet;
+import main.java.board.Move;
+import main.java.board.MoveList;
+import main.java.board.State;
+import main.java.board.StateSet;
+
+/**
+ * Move generator with its own preallocated scratch state (the reachable slide configurations, the
+ * action lists, the produced set, the empty region buffer and a lazy successor iterator per ply). A
+ * MoveGenerator is not itself thread-safe, so use one per thread or per search. Generators never
+ * share state, so any number of them can run at the same time.
+ */
+public class MoveGenerator {
+    /**
+     * Category passed to a SuccessorVisitor when next states aren't being categorized
+     */
+    public static final int UNCATEGORIZED = -1;
+
+    /**
+     * Distinct configurations the slides of a turn can reach
+     */
+    private final SlideConfigurations configurations;
+    /**
+     * Slides leading to the current batch of configurations
+     */
+    private final MoveList slideList;
+    /**
+     * Push actions from the current configuration
+     */
+    private final MoveList pushList;
+    /**
+     * Next states already added to the output of the current search
+     */
+    private final BoardSet produced;
+    /**
+     * Bit masks of the empty connected components found by the last call to getSlideActions
+     */
+    private final int[] regions;
+    /**
+     * Lazy successor iterators handed out by iterator(), indexed by ply
+     */
+    private SuccessorIterator[] iterators;
+
+    public MoveGenerator() {
+        configurations = new SlideConfigurations();
+        slideList = new MoveList();
+        pushList = new MoveList();
+        produced = new BoardSet(4096);
+        regions = new int[32];
+        iterators = new SuccessorIterator[8];
+    }
+
+    /**
+     * Find all possible next states from a given board position for a given player
+     * 
+     * @param board Board to analyze
+     * @return Set<Bitboard> of bitboards corresponding to possible next states
+     */
+    public Set<Bitboard> getNextStates(Bitboard board) {
+        // computed list of next states
+        Set<Bitboard> states = new HashSet<>();
+        visitSuccessors(board, (state, move, category) -> states.add(state.getState()), false);
+        return states;
+    }
+
+    /**
+     * Count the possible next states from a given board position for a given player, without
+     * creating any of them. Gives the same result as getNextStates(board).size()
+     * 
+     * @param board Board to analyze
+     * @return Number of distinct next states
+     */
+    public int countNextStates(Bitboard board) {
+        visitSuccessors(board, (state, move, category) -> {
+            // nothing to do but let the search fill the produced set
+        }, false);
+        return produced.size();
+    }
+
+    /**
+     * Lazily find the possible next states from a given board position, one at a time. The
+     * generator keeps one iterator for each ply of a search and resets it here, so a search doesn't
+     * allocate a new one at every node. Starting another iteration at the same ply ends the
+     * previous one
+     * 
+     * @param board Board to analyze
+     * @param ply   Depth of the position in the search asking for it
+     * @return SuccessorIterator over the possible next states
+     */
+    public SuccessorIterator iterator(Bitboard board, int ply) {
+        if (ply >= iterators.length)
+            iterators = Arrays.copyOf(iterators, Math.max(ply + 1, iterators.length * 2));
+        if (iterators[ply] == null)
+            iterators[ply] = new SuccessorIterator(this);
+        iterators[ply].reset(board);
+        return iterators[ply];
+    }
+
+    /**
+     * Find all possible next states from a given board position for a given player, and also record
+     * the move taken to reach that state
+     * 
+     * @param board Board to analyze
+     * @return Set<State> of State objects corresponding to possible next states and the moves taken
+     *         to reach them
+     */
+    public Set<State> getSuccessors(Bitboard board) {
+        // computed list of next states
+        Set<State> successors = new HashSet<>();
+        visitSuccessors(board,
+                (state, move, category) -> successors.add(new State(state.getState(), move)),
+                false);
+        return successors;
+    }
+
+    /**
+     * Receives the next states found by visitSuccessors, in the order they're found
+     */
+    public interface SuccessorVisitor {
+        /**
+         * Called once for each distinct, non-suicidal next state
+         * 
+         * @param board    The next state. This is the generator's working board, so copy it to keep
+         *                 it
+         * @param move     Packed Move taken to reach the next state
+         * @param category Category of the next state (see StateSet), or UNCATEGORIZED if the
+         *                 search was asked not to categorize
+         */
+        void visit(Bitboard board, int move, int category);
+    }
+
+    /**
+     * Find all possible next states from a given board position for a given player, and also record
+     * the move taken to reach that state. Group next states into categories
+     * 
+     * @param board Board to analyze
+     * @return A SetSet of corresponding to possible next states and the moves taken to reach them
+     */
+    public StateSet getStateSet(Bitboard board) {
+        // computed list of next states
+        StateSet stateSet = new StateSet();
+        visitSuccessors(board, stateSet::add);
+        return stateSet;
+    }
+
+    /**
+     * Find all possible next states from a given board position for a given player, passing each
+     * one to the visitor along with the move taken to reach it and its category
+     * 
+     * @param board   Board to analyze
+     * @param visitor SuccessorVisitor to pass next states to
+     */
+    public void visitSuccessors(Bitboard board, SuccessorVisitor visitor) {
+        visitSuccessors(board, visitor, true);
+    }
+
+    /**
+     * Find all possible next states from a given board position for a given player, passing each
+     * one to the visitor along with the move taken to reach it. Every other search of the generator
+     * is built on this one
+     * 
+     * @param board      Board to analyze
+     * @param visitor    SuccessorVisitor to pass next states to
+     * @param categorize Whether to find each next state's category. Skipping it saves the edge and
+     *                   checkmate checks, and the visitor is passed UNCATEGORIZED instead
+     */
+    public void visitSuccessors(Bitboard board, SuccessorVisitor visitor, boolean categorize) {
+        produced.clear();
+        int turn = board.getTurn();
+        configurations.reset(board);
+        int prefix, slide;
+        while (configurations.nextBatch(board, slideList)) {
+            prefix = configurations.getPrefix();
+            for (int i = 0; i < slideList.size(); i++) {
+                slide = slideList.get(i);
+                if (slide == SlideConfigurations.NO_SLIDE) {
+                    visitPushes(board, turn, prefix, visitor, categorize);
+                    continue;
+                }
+                long undo = board.makeSlide(Move.slideSrc(slide), Move.slideDst(slide));
+                visitPushes(board, turn, Move.withSlide(prefix, slide), visitor, categorize);
+                board.unmake(undo);
+            }
+        }
+    }
+
+    /**
+     * Visit the next states reached by each push action from a configuration of slides
+     * 
+     * @param board      Board after the slides
+     * @param turn       Turn indicator
+     * @param move       Packed Move of the slides made
+     * @param visitor    SuccessorVisitor to pass next states to
+     * @param categorize Whether to find each next state's category
+     */
+    private void visitPushes(Bitboard board, int turn, int move, SuccessorVisitor visitor,
+            boolean categorize) {
+        getPushActions(board, turn, pushList);
+        int push, winner;
+        for (int i = 0; i < pushList.size(); i++) {
+            push = pushList.get(i);
+            // perform push
+            long undo = board.makePush(Move.pushSrc(push), Move.pushDirIdx(push));
+
+            // only visit this state if it's not suicidal (or already visited)
+            winner = BitboardUtils.checkWinner(board);
+            if (winner != 1 - turn && produced.add(board))
+                visitor.visit(board, Move.withPush(move, push),
+                        categorize ? category(board, turn, winner) : UNCATEGORIZED);
+
+            // undo push
+            board.unmake(undo);
+        }
+    }
+
+    /**
+     * Pick the category of a non-suicidal next state
+     * 
+     * @param board  The next state
+     * @param turn   Turn indicator of the player who moved
+     * @param winner Winner of the next state (see BitboardUtils.checkWinner)
+     * @return One of StateSet.WINNING, CHECKMATE, NO_BORDER or OTHER
+     */
+    private static int category(Bitboard board, int turn, int winner) {
+        if (winner == turn) {
+            // this state is a winning state
+            return StateSet.WINNING;
+        }
+        if (BitboardUtils.onEdge(board, turn)) {
+            // this state puts you on an edge
+            return StateSet.OTHER;
+        }
+        if (BitboardUtils.isCheckmate(board, turn)) {
+            // this state puts your opponent in checkmate
+            return StateSet.CHECKMATE;
+        }
+        // this state is a no-border state but not checkmate
+        return StateSet.NO_BORDER;
+    }
+
+    /**
+     * Get all sliding actions for a given board state for a given player. A piece can slide to any
+     * empty space in an empty connected component it borders
+     * 
+     * @param board  Board to analyze
+     * @param turn   Turn indicator
+     * @param slides MoveList to fill with packed slide actions
+     */
+    public void getSlideActions(Bitboard board, int turn, MoveList slides) {
+        // label the empty connected components
+        int empty = BitMasks.valid & (~board.getPieces());
+        int toCheck = empty;
+        int numRegions = 0;
+        while (toCheck != 0) {
+            regions[numRegions] = FloodFill.fill(toCheck & ~(toCheck - 1), empty);
+            toCheck ^= regions[numRegions++];
+        }
+        slides.clear();
+        int pieces = board.getPieces(turn);
+        int pieceMask, adj, dests, destMask;
+        while (pieces != 0) {
+            pieceMask = pieces & ~(pieces - 1);
+            pieces ^= pieceMask;
+            adj = FloodFill.neighbours(pieceMask);
+            for (int i = 0; i < numRegions; i++) {
+                if ((regions[i] & adj) == 0)
+                    continue;
+                dests = regions[i];
+                while (dests != 0) {
+                    destMask = dests & ~(dests - 1);
+                    dests ^= destMask;
+                    slides.add(Move.slideAction(pieceMask, destMask));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get all the push actions for a given board state for a given player
+     * 
+     * @param board  Board to analyze
+     * @param turn   Turn indicator
+     * @param pushes MoveList to fill with packed push actions
+     */
+    public void getPushActions(Bitboard board, int turn, MoveList pushes) {
+        pushes.clear();
+        int pieceMask;
+        int piecesMask = board.getSquares(turn);
+        while (piecesMask != 0) {
+            pieceMask = piecesMask & ~(piecesMask - 1);
+            piecesMask ^= pieceMask;
+            for (int dirIdx = 0; dirIdx < GameUtils.DIRECTIONS.length; dirIdx++) {
+                if (BitboardUtils.isValidPush(board, pieceMask, dirIdx)) {
+                    pushes.add(Move.pushAction(pieceMask, dirIdx));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package main.java.util;
+
+import java.util.Arrays;
+
+import main.java.board.Bitboard;
+
+/**
+ * Counts how many times each position has come up in a game or playout, to apply the tie rule for
+ * repeated positions. Positions are identified by their 64-bit Zobrist hash, kept in a ring buffer
+ * of the most recent positions. A small table of counters, indexed by the low bits of the hash,
+ * tracks how many positions in the buffer fall into each bucket. A position whose bucket is empty
+ * can't have been seen, so the buffer only has to be scanned when the bucket says it might have.
+ * 
+ * Nothing is allocated after the tracker is created, and clearing it takes constant time, since
+ * the counters are stamped with the generation they were last changed in (like BoardSet).
+ */
+public class RepetitionTracker {
+    /**
+     * A position coming up after it's already been seen this many times is a tie
+     */
+    public static final int TIE_REPEATS = 5;
+    /**
+     * Default number of positions remembered, far more than a game or playout normally lasts
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    // hashes of the most recent positions, oldest first starting from the write position once the
+    // buffer is full
+    private final long[] history;
+    private final int historyMask;
+    private int size;
+
+    // number of positions in the buffer falling into each bucket, valid if stamped with the
+    // current generation
+    private final int[] counts;
+    private final int[] stamps;
+    private final int countMask;
+    private int generation;
+
+    /**
+     * Initialize a RepetitionTracker remembering the default number of positions
+     */
+    public RepetitionTracker() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initialize a RepetitionTracker
+     * 
+     * @param capacity Number of most recent positions to remember, rounded up to a power of two.
+     *                 Positions older than that no longer count as repeats
+     */
+    public RepetitionTracker(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        history = new long[slots];
+        historyMask = slots - 1;
+        // keep the buckets sparse, so an empty bucket is the usual case
+        counts = new int[slots << 2];
+        stamps = new int[slots << 2];
+        countMask = (slots << 2) - 1;
+        generation = 1;
+    }
+
+    /**
+     * Record the given position
+     * 
+     * @param board Board of the position
+     * @return Number of times the position was seen before now
+     */
+    public int add(Bitboard board) {
+        return add(board.getHash());
+    }
+
+    /**
+     * Record the position with the given hash
+     * 
+     * @param hash Zobrist hash of the position
+     * @return Number of times the position was seen before now
+     */
+    public int add(long hash) {
+        int seen = count(hash);
+        int slot = size & historyMask;
+        if (size > historyMask) {
+            // the buffer is full, so forget the oldest position
+            counts[bucket(history[slot])]--;
+        }
+        history[slot] = hash;
+        size++;
+        int bucket = bucket(hash);
+        if (stamps[bucket] != generation) {
+            stamps[bucket] = generation;
+            counts[bucket] = 0;
+        }
+        counts[bucket]++;
+        return seen;
+    }
+
+    /**
+     * Count the remembered occurrences of the position with the given hash
+     * 
+     * @param hash Zobrist hash of the position
+     * @return Number of times the position has been seen
+     */
+    public int count(long hash) {
+        int bucket = bucket(hash);
+        if (stamps[bucket] != generation || counts[bucket] == 0)
+            return 0;
+        int seen = 0;
+        int remembered = Math.min(size, history.length);
+        for (int i = 0; i < remembered; i++) {
+            if (history[i] == hash)
+                seen++;
+        }
+        return seen;
+    }
+
+    /**
+     * Get the bucket of the counter table the given hash falls into
+     * 
+     * @param hash Zobrist hash of a position
+     * @return Index into the counter table
+     */
+    private int bucket(long hash) {
+        return (int) hash & countMask;
+    }
+
+    /**
+     * Forget every position, in constant time
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == 0) {
+            // stamps have wrapped around, so old stamps could look current again
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+}
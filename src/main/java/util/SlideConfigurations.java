@@ -0,0 +1,252 @@
+package main.java.util;
+
+import main.java.board.Bitboard;
+import main.java.board.BitMasks;
+import main.java.board.Move;
+import main.java.board.MoveList;
+
+/**
+ * Finds the distinct configurations of the player's pieces a turn's two slides can reach, straight
+ * from which empty regions each piece borders, so pushes only have to be tried once per
+ * configuration. The opponent's pieces and the anchor can't change until the push, so a
+ * configuration is just the player's circles and squares, and reaching one only costs a couple of
+ * bit operations and a set lookup. Slide orders that meet at the same configuration, like A-then-B
+ * and B-then-A, are dropped without building any board.
+ * 
+ * Configurations are handed out in batches that share their first slide. The first batch is the
+ * configuration with no slides followed by every one-slide configuration. Each later batch is made
+ * with one first slide applied to the board, and holds the new configurations its second slide
+ * reaches. Configurations and the slides recorded for them come out in the same order as a search
+ * through every slide sequence (skipping a slide before trying any) would first find them.
+ * 
+ * A SlideConfigurations is not thread-safe, so each MoveGenerator and SuccessorIterator has its
+ * own.
+ */
+public class SlideConfigurations {
+    /**
+     * Stands for the configuration the board is already in within a batch
+     */
+    public static final int NO_SLIDE = -1;
+    private static final long NO_UNDO = -1;
+
+    // bit masks of the empty connected components before any slide and after the current first
+    // slide, ordered by lowest position, and of the components relabelled after the first slide
+    private final int[] regions;
+    private int numRegions;
+    private final int[] nextRegions;
+    private int numNextRegions;
+    private final int[] relabelled;
+    /**
+     * Every first slide, in the order their batches are handed out
+     */
+    private final MoveList firstSlides;
+    /**
+     * Configurations already handed out, as packed circles and squares
+     */
+    private final LongSet seen;
+
+    private int circles;
+    private int squares;
+    // index of the next first slide to make a batch for (-1 before the first batch), and the
+    // first slide made on the board for the current batch
+    private int firstIdx;
+    private int prefix;
+    private long undo;
+
+    public SlideConfigurations() {
+        regions = new int[32];
+        nextRegions = new int[32];
+        relabelled = new int[32];
+        firstSlides = new MoveList();
+        seen = new LongSet(1024);
+    }
+
+    /**
+     * Start over from the given board. The board must not change between here and the last call to
+     * nextBatch(), except for what nextBatch() does to it
+     * 
+     * @param board Board to find configurations for
+     */
+    public void reset(Bitboard board) {
+        int turn = board.getTurn();
+        circles = board.getCircles(turn);
+        squares = board.getSquares(turn);
+        numRegions = label(BitMasks.valid & ~board.getPieces(), regions);
+        seen.clear();
+        firstSlides.clear();
+        firstIdx = -1;
+        prefix = 0;
+        undo = NO_UNDO;
+    }
+
+    /**
+     * Move on to the next batch of configurations. The previous batch's first slide is undone and
+     * the new batch's first slide is made on the board, so each slide in the batch leads from the
+     * board to one of its configurations
+     * 
+     * @param board  Board passed to reset()
+     * @param slides MoveList to fill with one packed slide action (or NO_SLIDE) per configuration
+     * @return false once every batch has been handed out and the board is back where it started,
+     *         else true (the batch may be empty)
+     */
+    public boolean nextBatch(Bitboard board, MoveList slides) {
+        slides.clear();
+        if (undo != NO_UNDO) {
+            board.unmake(undo);
+            undo = NO_UNDO;
+        }
+        if (firstIdx == -1) {
+            firstIdx = 0;
+            seen.add(pack(circles, squares));
+            slides.add(NO_SLIDE);
+            addSlides(circles, squares, 0, regions, numRegions, slides);
+            // the first slides are exactly the one-slide configurations
+            for (int i = 1; i < slides.size(); i++) {
+                firstSlides.add(slides.get(i));
+            }
+            prefix = 0;
+            return true;
+        }
+        if (firstIdx == firstSlides.size()) {
+            prefix = 0;
+            return false;
+        }
+        int slide = firstSlides.get(firstIdx++);
+        int src = Move.slideSrc(slide);
+        int dst = Move.slideDst(slide);
+        undo = board.makeSlide(src, dst);
+        prefix = Move.withSlide(0, slide);
+
+        int nextCircles = circles;
+        int nextSquares = squares;
+        if ((circles & src) != 0)
+            nextCircles ^= src | dst;
+        else
+            nextSquares ^= src | dst;
+        relabel(src, dst);
+        // sliding the piece that just slid again only reaches what one slide (or none) reaches
+        addSlides(nextCircles, nextSquares, dst, nextRegions, numNextRegions, slides);
+        return true;
+    }
+
+    /**
+     * Get the slides made on the board for the current batch
+     * 
+     * @return Packed Move holding the batch's first slide, or no slides for the first batch
+     */
+    public int getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Add a slide for each piece and destination that reaches a configuration not seen yet. Pieces
+     * are taken by position, and each one's destinations region by region
+     * 
+     * @param circles    Bit mask of the player's circles
+     * @param squares    Bit mask of the player's squares
+     * @param skip       Bit mask of a piece not to slide (0 for none)
+     * @param regions    Empty connected components, ordered by lowest position
+     * @param numRegions Number of empty connected components
+     * @param slides     MoveList to add packed slide actions to
+     */
+    private void addSlides(int circles, int squares, int skip, int[] regions, int numRegions,
+            MoveList slides) {
+        int pieces = (circles | squares) & ~skip;
+        int pieceMask, adj, dests, destMask;
+        long key;
+        while (pieces != 0) {
+            pieceMask = pieces & ~(pieces - 1);
+            pieces ^= pieceMask;
+            adj = FloodFill.neighbours(pieceMask);
+            for (int i = 0; i < numRegions; i++) {
+                if ((regions[i] & adj) == 0)
+                    continue;
+                dests = regions[i];
+                while (dests != 0) {
+                    destMask = dests & ~(dests - 1);
+                    dests ^= destMask;
+                    if ((circles & pieceMask) != 0)
+                        key = pack(circles ^ pieceMask ^ destMask, squares);
+                    else
+                        key = pack(circles, squares ^ pieceMask ^ destMask);
+                    if (seen.add(key))
+                        slides.add(Move.slideAction(pieceMask, destMask));
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the empty connected components after a slide from those before it. The slide only
+     * changes the components bordering the position it leaves, which join up through it, and one
+     * of those is the component it lands in, which may split where it lands. The rest are kept as
+     * they are. The joined component is only flood filled again if it can actually split, which is
+     * when the positions around the landing spot don't connect its empty neighbours by themselves
+     * 
+     * @param src Bit mask of the slide's starting position
+     * @param dst Bit mask of the slide's ending position, in a component bordering src
+     */
+    private void relabel(int src, int dst) {
+        int touching = FloodFill.neighbours(src);
+        int touched = src;
+        for (int i = 0; i < numRegions; i++) {
+            if ((regions[i] & touching) != 0)
+                touched |= regions[i];
+        }
+        touched &= ~dst;
+        int numRelabelled;
+        int dstAdj = FloodFill.neighbours(dst) & touched;
+        if (Integer.bitCount(dstAdj) <= 1 || (FloodFill.fill(dstAdj & ~(dstAdj - 1),
+                FloodFill.surrounding(dst) & touched) & dstAdj) == dstAdj) {
+            relabelled[0] = touched;
+            numRelabelled = 1;
+        } else {
+            numRelabelled = label(touched, relabelled);
+        }
+
+        // merge the untouched and relabelled components, both already ordered by lowest position
+        int j = 0;
+        int lowest;
+        numNextRegions = 0;
+        for (int i = 0; i < numRegions; i++) {
+            if ((regions[i] & touching) != 0)
+                continue;
+            lowest = Integer.numberOfTrailingZeros(regions[i]);
+            while (j < numRelabelled && Integer.numberOfTrailingZeros(relabelled[j]) < lowest) {
+                nextRegions[numNextRegions++] = relabelled[j++];
+            }
+            nextRegions[numNextRegions++] = regions[i];
+        }
+        while (j < numRelabelled) {
+            nextRegions[numNextRegions++] = relabelled[j++];
+        }
+    }
+
+    /**
+     * Label the empty connected components, in order of their lowest position
+     * 
+     * @param empty   Bit mask of the empty positions
+     * @param regions Array to fill with the components' bit masks
+     * @return Number of components
+     */
+    private static int label(int empty, int[] regions) {
+        int toCheck = empty;
+        int numRegions = 0;
+        while (toCheck != 0) {
+            regions[numRegions] = FloodFill.fill(toCheck & ~(toCheck - 1), empty);
+            toCheck ^= regions[numRegions++];
+        }
+        return numRegions;
+    }
+
+    /**
+     * Pack a configuration of the player's pieces into a long
+     * 
+     * @param circles Bit mask of the player's circles
+     * @param squares Bit mask of the player's squares
+     * @return The circles in the high 32 bits and squares in the low 32 bits
+     */
+    private static long pack(int circles, int squares) {
+        return ((long) circles << 32) | (squares & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,309 @@
+package main.java.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import main.java.board.Bitboard;
+import main.java.board.State;
+import main.java.board.StateSet;
+
+/**
+ * Bounded cache from board positions to their next states, safe to share between threads. Each
+ * position's next states are stored in compact primitive arrays (packed boards, moves and
+ * categories) in the order the generator finds them, so getNextStates, getSuccessors and
+ * getStateSet can all be answered from one entry, and the sets they return are built in the same
+ * order as generating them would.
+ * 
+ * The cache is kept under a memory budget with the CLOCK (second chance) policy: entries wait in
+ * a queue in the order they were added, and when the budget is exceeded, the entry at the head is
+ * evicted unless it's been used since it last came around, in which case it goes to the back of
+ * the queue.
+ */
+public class SuccessorCache {
+    /**
+     * Rough number of bytes used by an entry apart from its successors (the key, the entry object,
+     * array headers and the map and queue nodes)
+     */
+    private static final int ENTRY_BYTES = 256;
+    /**
+     * Number of bytes used by each successor: packed circles, packed squares, hash, anchor, move
+     * and category
+     */
+    private static final int SUCCESSOR_BYTES = 33;
+
+    private final ConcurrentHashMap<Bitboard, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Bitboard> clock = new ConcurrentLinkedQueue<>();
+    private final long budget;
+    private final AtomicLong bytesUsed = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Next states of one position
+     */
+    private static class Entry {
+        final long[] circles;
+        final long[] squares;
+        final long[] hashes;
+        final int[] anchors;
+        final int[] moves;
+        final byte[] categories;
+        // whether the entry has been used since the clock last passed it
+        volatile boolean referenced;
+
+        Entry(long[] circles, long[] squares, long[] hashes, int[] anchors, int[] moves,
+                byte[] categories) {
+            this.circles = circles;
+            this.squares = squares;
+            this.hashes = hashes;
+            this.anchors = anchors;
+            this.moves = moves;
+            this.categories = categories;
+        }
+
+        int size() {
+            return moves.length;
+        }
+
+        long bytes() {
+            return ENTRY_BYTES + (long) SUCCESSOR_BYTES * size();
+        }
+
+        Bitboard board(int i) {
+            return new Bitboard(circles[i], squares[i], anchors[i]);
+        }
+    }
+
+    /**
+     * Collects the next states found by a MoveGenerator into growable arrays
+     */
+    private static class EntryBuilder implements MoveGenerator.SuccessorVisitor {
+        long[] circles = new long[64];
+        long[] squares = new long[64];
+        long[] hashes = new long[64];
+        int[] anchors = new int[64];
+        int[] moves = new int[64];
+        byte[] categories = new byte[64];
+        int size;
+
+        @Override
+        public void visit(Bitboard board, int move, int category) {
+            if (size == moves.length) {
+                circles = Arrays.copyOf(circles, size * 2);
+                squares = Arrays.copyOf(squares, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+                anchors = Arrays.copyOf(anchors, size * 2);
+                moves = Arrays.copyOf(moves, size * 2);
+                categories = Arrays.copyOf(categories, size * 2);
+            }
+            circles[size] = board.getPackedCircles();
+            squares[size] = board.getPackedSquares();
+            hashes[size] = board.getHash();
+            anchors[size] = board.getAnchor();
+            moves[size] = move;
+            categories[size] = (byte) category;
+            size++;
+        }
+
+        Entry build() {
+            return new Entry(Arrays.copyOf(circles, size), Arrays.copyOf(squares, size),
+                    Arrays.copyOf(hashes, size), Arrays.copyOf(anchors, size),
+                    Arrays.copyOf(moves, size), Arrays.copyOf(categories, size));
+        }
+    }
+
+    /**
+     * Initialize an empty SuccessorCache
+     * 
+     * @param budget Roughly how many bytes the cached next states may take up
+     */
+    public SuccessorCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Find all possible next states from a given board position, using the cached ones if there
+     * are any
+     * 
+     * @param board     Board to analyze
+     * @param generator MoveGenerator to find the next states with if they aren't cached
+     * @return Set<Bitboard> of bitboards corresponding to possible next states
+     */
+    public Set<Bitboard> getNextStates(Bitboard board, MoveGenerator generator) {
+        Entry entry = lookup(board, generator);
+        Set<Bitboard> states = new HashSet<>();
+        for (int i = 0; i < entry.size(); i++) {
+            states.add(entry.board(i));
+        }
+        return states;
+    }
+
+    /**
+     * Find all possible next states from a given board position and the moves taken to reach them,
+     * using the cached ones if there are any
+     * 
+     * @param board     Board to analyze
+     * @param generator MoveGenerator to find the next states with if they aren't cached
+     * @return Set<State> of State objects corresponding to possible next states and the moves taken
+     *         to reach them
+     */
+    public Set<State> getSuccessors(Bitboard board, MoveGenerator generator) {
+        Entry entry = lookup(board, generator);
+        Set<State> successors = new HashSet<>();
+        for (int i = 0; i < entry.size(); i++) {
+            successors.add(new State(entry.board(i), entry.moves[i]));
+        }
+        return successors;
+    }
+
+    /**
+     * Find all possible next states from a given board position and the moves taken to reach them,
+     * grouped into categories, using the cached ones if there are any
+     * 
+     * @param board     Board to analyze
+     * @param generator MoveGenerator to find the next states with if they aren't cached
+     * @return A StateSet of the possible next states and the moves taken to reach them
+     */
+    public StateSet getStateSet(Bitboard board, MoveGenerator generator) {
+        Entry entry = lookup(board, generator);
+        StateSet stateSet = new StateSet();
+        for (int i = 0; i < entry.size(); i++) {
+            stateSet.add(entry.circles[i], entry.squares[i], entry.anchors[i], entry.hashes[i],
+                    entry.moves[i], entry.categories[i]);
+        }
+        return stateSet;
+    }
+
+    /**
+     * Get the entry for the given board, generating and caching it on a miss
+     * 
+     * @param board     Board to look up
+     * @param generator MoveGenerator to find the next states with on a miss
+     * @return Entry holding the board's next states
+     */
+    private Entry lookup(Bitboard board, MoveGenerator generator) {
+        Entry entry = entries.get(board);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        EntryBuilder builder = new EntryBuilder();
+        generator.visitSuccessors(board, builder);
+        entry = builder.build();
+
+        // the key has to be a copy, since the given board may change later
+        Bitboard key = board.getState();
+        Entry existing = entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            // another thread cached it first
+            return existing;
+        }
+        clock.add(key);
+        bytesUsed.addAndGet(entry.bytes());
+        evict();
+        return entry;
+    }
+
+    /**
+     * Evict entries until the cache is back under its budget
+     */
+    private void evict() {
+        Bitboard key;
+        Entry entry;
+        while (bytesUsed.get() > budget && (key = clock.poll()) != null) {
+            entry = entries.get(key);
+            if (entry == null) {
+                // removed by clear()
+                continue;
+            }
+            if (entry.referenced) {
+                // give it a second chance
+                entry.referenced = false;
+                clock.add(key);
+            } else {
+                entries.remove(key);
+                bytesUsed.addAndGet(-entry.bytes());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Empty the cache and reset its counters
+     */
+    public void clear() {
+        Bitboard key;
+        while ((key = clock.poll()) != null) {
+            Entry entry = entries.remove(key);
+            if (entry != null)
+                bytesUsed.addAndGet(-entry.bytes());
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Get the number of positions in the cache
+     * 
+     * @return Number of cached positions
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the approximate number of bytes taken up by the cached next states
+     * 
+     * @return Bytes used
+     */
+    public long getBytesUsed() {
+        return bytesUsed.get();
+    }
+
+    /**
+     * Get the number of lookups answered from the cache
+     * 
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that had to generate the next states
+     * 
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of positions evicted to stay under the budget
+     * 
+     * @return Number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        long lookups = getHits() + getMisses();
+        double hitRate = lookups == 0 ? 0 : (double) getHits() / lookups;
+        return "Successor cache: " + size() + " positions, " + getBytesUsed() / 1024 + " KB, "
+                + getHits() + " hits, " + getMisses() + " misses ("
+                + NumberUtils.round(hitRate * 100, 1) + "% hit rate), " + getEvictions()
+                + " evictions";
+    }
+}
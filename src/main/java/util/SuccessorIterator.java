@@ -0,0 +1,204 @@
+package main.java.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import main.java.board.Bitboard;
+import main.java.board.BoardSet;
+import main.java.board.Move;
+import main.java.board.MoveList;
+
+/**
+ * Iterator that generates the possible next states of a board lazily, one at a time. Goes through
+ * the same slide configurations (see SlideConfigurations) and pushes as MoveGenerator, but keeps
+ * its place between calls to next(), so only as many successors are generated as the caller asks
+ * for.
+ * 
+ * At each configuration, winning pushes are produced first, then pushes that put the opponent in
+ * checkmate, then pushes that leave the player off the border, then the rest.
+ * 
+ * Iterators belong to the MoveGenerator that hands them out, which reuses each one, along with its
+ * dedupe sets, for every board at the same ply (see MoveGenerator.iterator).
+ */
+public class SuccessorIterator implements Iterator<Bitboard> {
+    private static final long NO_UNDO = -1;
+    // categories of pushes, in the order they're produced
+    private static final int WINNING = 0;
+    private static final int CHECKMATE = 1;
+    private static final int NO_BORDER = 2;
+    private static final int OTHER = 3;
+
+    private final MoveGenerator generator;
+    /**
+     * Working copy of the board, changed as the search moves through slides and pushes
+     */
+    private final Bitboard board;
+    private int turn;
+
+    // configurations of the player's pieces, the slides leading to the current batch of them,
+    // index of the next one to try, and the undo record and packed move of the current one
+    private final SlideConfigurations configurations;
+    private final MoveList slides;
+    private int slideIdx;
+    private long undo;
+    private int move;
+
+    // push actions at the current configuration, and the non-suicidal ones grouped by category
+    private final MoveList pushes;
+    private final MoveList[] pushLists;
+    private int pushCategory;
+    private int pushIdx;
+
+    // successors already produced. Sized like MoveGenerator's and cleared in constant time by
+    // reset(), so a reused iterator never has to grow it again
+    private final BoardSet produced;
+
+    private boolean done;
+    private Bitboard next;
+    private int nextMove;
+    private int lastMove;
+
+    /**
+     * Initialize a SuccessorIterator with nothing to iterate over. Call reset() with a board before
+     * using it
+     * 
+     * @param generator MoveGenerator used to find push actions
+     */
+    SuccessorIterator(MoveGenerator generator) {
+        this.generator = generator;
+        board = new Bitboard();
+
+        configurations = new SlideConfigurations();
+        slides = new MoveList();
+        pushes = new MoveList(32);
+        pushLists = new MoveList[4];
+        for (int i = 0; i < pushLists.length; i++) {
+            pushLists[i] = new MoveList(16);
+        }
+        produced = new BoardSet(4096);
+        done = true;
+    }
+
+    /**
+     * Begin iterating over the next states of the given board, dropping whatever was left of the
+     * previous iteration. The given board is not changed
+     * 
+     * @param board Board to find next states for
+     */
+    void reset(Bitboard board) {
+        this.board.restoreState(board);
+        turn = board.getTurn();
+        configurations.reset(this.board);
+        slides.clear();
+        slideIdx = 0;
+        undo = NO_UNDO;
+        pushCategory = pushLists.length;
+        produced.clear();
+        done = false;
+        next = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = advance();
+        return next != null;
+    }
+
+    @Override
+    public Bitboard next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        Bitboard state = next;
+        next = null;
+        lastMove = nextMove;
+        return state;
+    }
+
+    /**
+     * Get the move taken to reach the state last returned by next()
+     * 
+     * @return Packed Move (see Move)
+     */
+    public int getMove() {
+        return lastMove;
+    }
+
+    /**
+     * Find the push actions for the current board and group them by category, dropping suicidal
+     * pushes
+     */
+    private void groupPushes() {
+        for (int i = 0; i < pushLists.length; i++) {
+            pushLists[i].clear();
+        }
+        generator.getPushActions(board, turn, pushes);
+        int push, winner, category;
+        for (int i = 0; i < pushes.size(); i++) {
+            push = pushes.get(i);
+            long undo = board.makePush(Move.pushSrc(push), Move.pushDirIdx(push));
+            winner = BitboardUtils.checkWinner(board);
+            if (winner == turn)
+                category = WINNING;
+            else if (winner != -1)
+                category = -1;
+            else if (BitboardUtils.onEdge(board, turn))
+                category = OTHER;
+            else if (BitboardUtils.isCheckmate(board, turn))
+                category = CHECKMATE;
+            else
+                category = NO_BORDER;
+            board.unmake(undo);
+            if (category != -1)
+                pushLists[category].add(push);
+        }
+        pushCategory = WINNING;
+        pushIdx = 0;
+    }
+
+    /**
+     * Continue the search until the next unseen successor is found
+     * 
+     * @return The next successor, or null if there are none left
+     */
+    private Bitboard advance() {
+        while (!done) {
+            // try the next push at the current configuration
+            if (pushCategory < pushLists.length) {
+                if (pushIdx == pushLists[pushCategory].size()) {
+                    pushCategory++;
+                    pushIdx = 0;
+                    continue;
+                }
+                int push = pushLists[pushCategory].get(pushIdx++);
+                long pushUndo = board.makePush(Move.pushSrc(push), Move.pushDirIdx(push));
+                Bitboard state = produced.add(board) ? board.getState() : null;
+                board.unmake(pushUndo);
+                if (state != null) {
+                    nextMove = Move.withPush(move, push);
+                    return state;
+                }
+                continue;
+            }
+            // out of pushes, move on to the next configuration
+            if (undo != NO_UNDO) {
+                board.unmake(undo);
+                undo = NO_UNDO;
+            }
+            if (slideIdx == slides.size()) {
+                if (!configurations.nextBatch(board, slides))
+                    done = true;
+                slideIdx = 0;
+                continue;
+            }
+            int slide = slides.get(slideIdx++);
+            move = configurations.getPrefix();
+            if (slide != SlideConfigurations.NO_SLIDE) {
+                undo = board.makeSlide(Move.slideSrc(slide), Move.slideDst(slide));
+                move = Move.withSlide(move, slide);
+            }
+            groupPushes();
+        }
+        return null;
+    }
+}
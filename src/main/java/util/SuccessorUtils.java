@@ -1,26 +1,55 @@
 package main.java.util;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import main.java.board.Bitboard;
-import main.java.board.BitMasks;
 import main.java.board.Move;
+import main.java.board.MoveList;
 import main.java.board.State;
 import main.java.board.StateSet;
 
 /**
- * Utility functions to determine the next states or available actions for a board state
+ * Utility functions to determine the next states or available actions for a board state. Each
+ * thread gets its own MoveGenerator, so these are safe to call from a thread pool
  */
 public class SuccessorUtils {
-    private static Map<Integer, Set<Integer>> posToAdjCCID = new HashMap<>();
-    private static Map<Integer, Integer> ccIDToOwner = new HashMap<>();
-    private static Map<Integer, Integer> ownerToCCs = new HashMap<>();
-    private static Map<Integer, Integer> ccIDToCC = new HashMap<>();
+    private static final ThreadLocal<MoveGenerator> generator =
+            ThreadLocal.withInitial(MoveGenerator::new);
+    private static final ThreadLocal<WinDetector> winDetector =
+            ThreadLocal.withInitial(() -> new WinDetector(generator.get()));
+    private static final ThreadLocal<TurnSampler> sampler =
+            ThreadLocal.withInitial(() -> new TurnSampler(generator.get()));
+    // next states shared between threads, or null to always generate them
+    private static volatile SuccessorCache cache;
+
+    /**
+     * Get the calling thread's move generator
+     * 
+     * @return MoveGenerator owned by the calling thread
+     */
+    public static MoveGenerator generator() {
+        return generator.get();
+    }
+
+    /**
+     * Start caching next states, so getNextStates, getSuccessors and getStateSet only generate
+     * them the first time a position is seen (until it's evicted)
+     * 
+     * @param successorCache SuccessorCache to use, or null to stop caching
+     */
+    public static void setCache(SuccessorCache successorCache) {
+        cache = successorCache;
+    }
+
+    /**
+     * Get the cache of next states in use, for example to report its hit rate
+     * 
+     * @return SuccessorCache in use, or null if next states aren't being cached
+     */
+    public static SuccessorCache getCache() {
+        return cache;
+    }
 
     /**
      * Find all possible next states from a given board position for a given player
@@ -29,66 +58,36 @@ public class SuccessorUtils {
      * @return Set<Bitboard> of bitboards corresponding to possible next states
      */
     public static Set<Bitboard> getNextStates(Bitboard board) {
-        // computed list of next states
-        Set<Bitboard> states = new HashSet<>();
-        // record set of board states seen at each level to avoid recomputation
-        List<Set<Bitboard>> seen = new ArrayList<>();
-        for (int i = 0; i < GameUtils.NUM_SLIDES + 1; i++) {
-            seen.add(new HashSet<>());
-        }
-        getNextStatesHelper(board, board.getTurn(), GameUtils.NUM_SLIDES, states, seen);
-        return states;
+        SuccessorCache successorCache = cache;
+        if (successorCache != null)
+            return successorCache.getNextStates(board, generator.get());
+        return generator.get().getNextStates(board);
     }
 
-
     /**
-     * Helper function for finding next states with a variable number of sliding actions
+     * Count the possible next states from a given board position without creating them, for when
+     * only the branching factor is needed
      * 
-     * @param board     Board to find moves for
-     * @param turn      Turn indicator
-     * @param numSlides Number of slides remaining in turn
-     * @param states    Set<Bitboard> of computed next states
-     * @param seen      List<Set<Bitboard>> List of seen board states at different levels
+     * @param board Board to analyze
+     * @return Number of distinct next states
      */
-    public static void getNextStatesHelper(Bitboard board, int turn, int numSlides,
-            Set<Bitboard> states, List<Set<Bitboard>> seen) {
-        // skip if been here before
-        if (seen.get(numSlides).contains(board))
-            return;
-        // remember state
-        seen.get(numSlides).add(board);
-        // save board state
-        Bitboard preState = board.getState();
-
-        if (numSlides == 0) {
-            // if zero slides remaining, check all push actions
-            List<Integer> pushes = getPushActions(board, turn);
-            for (int i = 0; i < pushes.size() - 1; i += 2) {
-                // perform push
-                board.push(pushes.get(i), (char) (int) pushes.get(i + 1));
-
-                // only keep this state if it's not suicidal
-                if (BitboardUtils.checkWinner(board) != 1 - turn)
-                    states.add(board.getState());
+    public static int countNextStates(Bitboard board) {
+        return generator.get().countNextStates(board);
+    }
 
-                // undo push
-                board.restoreState(preState);
-            }
-        } else {
-            // otherwise check all slide actions
-            List<Integer> slides = getSlideActions(board, turn);
-            // recurse on skipped slide action
-            getNextStatesHelper(board, turn, numSlides - 1, states, seen);
-            // check all slides
-            for (int i = 0; i < slides.size() - 1; i += 2) {
-                // perform slide
-                board.slide(slides.get(i), slides.get(i + 1));
-                // recurse
-                getNextStatesHelper(board, turn, numSlides - 1, states, seen);
-                // undo slide
-                board.slide(slides.get(i + 1), slides.get(i));
-            }
-        }
+    /**
+     * Lazily find the possible next states from a given board position, so searches that stop
+     * early only pay for the successors they visit. Winning and checkmating pushes come first at
+     * each set of slides. The iterator is reused for every position at the same ply, so it's only
+     * good until the next call with that ply
+     * 
+     * @param board Board to analyze
+     * @param ply   Depth of the position in the search asking for it
+     * @return Iterable<Bitboard> over the possible next states
+     */
+    public static Iterable<Bitboard> iterateNextStates(Bitboard board, int ply) {
+        MoveGenerator gen = generator.get();
+        return () -> gen.iterator(board, ply);
     }
 
     /**
@@ -100,239 +99,105 @@ public class SuccessorUtils {
      *         to reach them
      */
     public static Set<State> getSuccessors(Bitboard board) {
-        // computed list of next states
-        Set<State> successors = new HashSet<>();
-        // record set of board states seen at each level to avoid recomputation
-        List<Set<Bitboard>> seen = new ArrayList<>();
-        for (int i = 0; i < GameUtils.NUM_SLIDES + 1; i++) {
-            seen.add(new HashSet<>());
-        }
-        getSuccessorsHelper(board, board.getTurn(), GameUtils.NUM_SLIDES, new Move(), successors,
-                seen);
-        return successors;
+        SuccessorCache successorCache = cache;
+        if (successorCache != null)
+            return successorCache.getSuccessors(board, generator.get());
+        return generator.get().getSuccessors(board);
     }
 
-
     /**
-     * Helper function for finding next successors with a variable number of sliding actions
+     * Find all possible next states from a given board position for a given player, and also record
+     * the move taken to reach that state. Group next states into categories
      * 
-     * @param board      Board to find moves for
-     * @param turn       Turn indicator
-     * @param numSlides  Number of slides remaining in turn
-     * @param move       Generated Move so far
-     * @param successors Set<State> of computed next states
-     * @param seen       List<Set<Bitboard>> List of seen board states at different levels
+     * @param board Board to analyze
+     * @return A SetSet of corresponding to possible next states and the moves taken to reach them
      */
-    public static void getSuccessorsHelper(Bitboard board, int turn, int numSlides, Move move,
-            Set<State> successors, List<Set<Bitboard>> seen) {
-        // skip if been here before
-        if (seen.get(numSlides).contains(board))
-            return;
-        // remember state
-        seen.get(numSlides).add(board);
-        // save board state
-        Bitboard preState = board.getState();
-
-        if (numSlides == 0) {
-            // if zero slides remaining, check all push actions
-            List<Integer> pushes = getPushActions(board, turn);
-            for (int i = 0; i < pushes.size() - 1; i += 2) {
-                // perform push
-                board.push(pushes.get(i), (char) (int) pushes.get(i + 1));
-                move.add(pushes.get(i));
-                move.add(pushes.get(i + 1));
-
-                // only keep this state if it's not suicidal
-                if (BitboardUtils.checkWinner(board) != 1 - turn)
-                    successors.add(new State(board.getState(), move));
-
-                // undo push
-                board.restoreState(preState);
-                move.pop();
-                move.pop();
-            }
-        } else {
-            // otherwise check all slide actions
-            List<Integer> slides = getSlideActions(board, turn);
-            // recurse on skipped slide action
-            getSuccessorsHelper(board, turn, numSlides - 1, move, successors, seen);
-            // check all slides
-            for (int i = 0; i < slides.size() - 1; i += 2) {
-                // perform slide
-                board.slide(slides.get(i), slides.get(i + 1));
-                move.add(slides.get(i));
-                move.add(slides.get(i + 1));
-                // recurse
-                getSuccessorsHelper(board, turn, numSlides - 1, move, successors, seen);
-                // undo slide
-                board.slide(slides.get(i + 1), slides.get(i));
-                move.pop();
-                move.pop();
-            }
-        }
+    public static StateSet getStateSet(Bitboard board) {
+        SuccessorCache successorCache = cache;
+        if (successorCache != null)
+            return successorCache.getStateSet(board, generator.get());
+        return generator.get().getStateSet(board);
     }
 
     /**
      * Get all sliding actions for a given board state for a given player
      * 
-     * @param board Board to analyze
-     * @param turn  Turn indicator
-     * @return List of sliding actions, alternating source and destination bit masks
+     * @param board  Board to analyze
+     * @param turn   Turn indicator
+     * @param slides MoveList to fill with packed slide actions
      */
-    public static List<Integer> getSlideActions(Bitboard board, int turn) {
-        posToAdjCCID.clear();
-        ccIDToOwner.clear();
-        ownerToCCs.clear();
-        ccIDToCC.clear();
-        int toCheck = (BitMasks.valid & (~board.getPieces()));
-        int check;
-        int cc, ccId = 0;
-        while (toCheck != 0) {
-            check = toCheck & ~(toCheck - 1);
-            cc = SearchUtils.checkSpaces(board, check, ccId, posToAdjCCID, ccIDToOwner, ownerToCCs);
-            toCheck ^= cc;
-            ccIDToCC.put(ccId, cc);
-            ccId++;
-        }
-        List<Integer> slides = new ArrayList<>();
-        int pieces = board.getPieces(turn);
-        int pieceMask, dests, destMask;
-        while (pieces != 0) {
-            pieceMask = pieces & ~(pieces - 1);
-            pieces ^= pieceMask;
-            if (posToAdjCCID.containsKey(pieceMask)) {
-                for (int id : posToAdjCCID.get(pieceMask)) {
-                    dests = ccIDToCC.get(id);
-                    while (dests != 0) {
-                        destMask = dests & ~(dests - 1);
-                        dests ^= destMask;
-                        slides.add(pieceMask);
-                        slides.add(destMask);
-                    }
-                }
-            }
-        }
-        return slides;
+    public static void getSlideActions(Bitboard board, int turn, MoveList slides) {
+        generator.get().getSlideActions(board, turn, slides);
     }
 
     /**
      * Get all the push actions for a given board state for a given player
      * 
+     * @param board  Board to analyze
+     * @param turn   Turn indicator
+     * @param pushes MoveList to fill with packed push actions
+     */
+    public static void getPushActions(Bitboard board, int turn, MoveList pushes) {
+        generator.get().getPushActions(board, turn, pushes);
+    }
+
+    /**
+     * Find a move that wins this turn for the player to move, without generating every next state
+     * 
      * @param board Board to analyze
-     * @param turn  Turn indicator
-     * @return List of push actions, alternating location and direction indicators
+     * @return Packed Move that pushes an opponent's piece off the board, or WinDetector.NO_WIN
      */
-    public static List<Integer> getPushActions(Bitboard board, int turn) {
-        List<Integer> pushes = new ArrayList<>();
-        int pieceMask;
-        int piecesMask = board.getSquares(turn);
-        while (piecesMask != 0) {
-            pieceMask = piecesMask & ~(piecesMask - 1);
-            piecesMask ^= pieceMask;
-            for (char dir : GameUtils.DIRECTIONS) {
-                if (BitboardUtils.isValidPush(board, pieceMask, dir)) {
-                    pushes.add(pieceMask);
-                    pushes.add((int) dir);
-                }
-            }
-        }
-        return pushes;
+    public static int findWin(Bitboard board) {
+        return winDetector.get().findWin(board);
     }
 
     /**
-     * Find all possible next states from a given board position for a given player, and also record
-     * the move taken to reach that state. Group next states into categories
+     * Check whether the player to move can win this turn, without generating every next state
      * 
      * @param board Board to analyze
-     * @return A SetSet of corresponding to possible next states and the moves taken to reach them
+     * @return true if the player to move can push an opponent's piece off the board, else false
      */
-    public static StateSet getStateSet(Bitboard board) {
-        // computed list of next states
-        StateSet stateSet = new StateSet();
-        // record set of board states seen at each level to avoid recomputation
-        List<Set<Bitboard>> seen = new ArrayList<>();
-        for (int i = 0; i < GameUtils.NUM_SLIDES + 1; i++) {
-            seen.add(new HashSet<>());
-        }
-        getStateSetHelper(board, board.getTurn(), GameUtils.NUM_SLIDES, new Move(), stateSet, seen);
-        return stateSet;
+    public static boolean canWin(Bitboard board) {
+        return winDetector.get().canWin(board);
     }
 
     /**
-     * Helper function for finding next successors with a variable number of sliding actions
+     * Find the opponent's pieces that the player to move could push off the board this turn
      * 
-     * @param board     Board to find moves for
-     * @param turn      Turn indicator
-     * @param numSlides Number of slides remaining in turn
-     * @param move      Generated Move so far
-     * @param stateSet  StateSet of computed next successors
-     * @param seen      List<Set<Bitboard>> List of seen board states at different levels
+     * @param board Board to analyze
+     * @return Bit mask of the threatened pieces
      */
-    public static void getStateSetHelper(Bitboard board, int turn, int numSlides, Move move,
-            StateSet stateSet, List<Set<Bitboard>> seen) {
-        // skip if been here before
-        if (seen.get(numSlides).contains(board))
-            return;
-        // remember state
-        seen.get(numSlides).add(board);
-        // save board state
-        Bitboard preState = board.getState();
-        int winner;
-        if (numSlides == 0) {
-            // if zero slides remaining, check all push actions
-            List<Integer> pushes = getPushActions(board, turn);
-            for (int i = 0; i < pushes.size() - 1; i += 2) {
-                // perform push
-                board.push(pushes.get(i), (char) (int) pushes.get(i + 1));
-                move.add(pushes.get(i));
-                move.add(pushes.get(i + 1));
+    public static int getThreatened(Bitboard board) {
+        return winDetector.get().getThreatened(board);
+    }
 
-                // pick group to put move in
-                winner = BitboardUtils.checkWinner(board);
-                if (winner == turn) {
-                    // this state is a winning state
-                    stateSet.winningStates.add(new State(board.getState(), move));
-                } else if (winner == -1) {
-                    if (!BitboardUtils.onEdge(board, turn)) {
-                        // this state does not put you on an edge
-                        if (BitboardUtils.isCheckmate(board, turn)) {
-                            // this state puts your opponent in checkmate
-                            stateSet.checkmateStates.add(new State(board.getState(), move));
-                        } else {
-                            // this state is a no-border state but not checkmate
-                            stateSet.noBorderStates.add(new State(board.getState(), move));
-                        }
-                    } else {
-                        // this state puts you on an edge
-                        stateSet.otherStates.add(new State(board.getState(), move));
-                    }
-                } else {
-                    // this state is suicidal. don't add it to the StateSet
-                }
+    /**
+     * Get the state after a move that wins this turn for the player to move
+     * 
+     * @param board Board to analyze
+     * @return New board after the winning move, or null if the player can't win this turn
+     */
+    public static Bitboard getWinningState(Bitboard board) {
+        int win = findWin(board);
+        if (win == WinDetector.NO_WIN)
+            return null;
+        Bitboard state = board.getState();
+        Move.apply(win, state);
+        return state;
+    }
 
-                // undo push
-                board.restoreState(preState);
-                move.pop();
-                move.pop();
-            }
-        } else {
-            // otherwise check all slide actions
-            List<Integer> slides = getSlideActions(board, turn);
-            // recurse on skipped slide action
-            getStateSetHelper(board, turn, numSlides - 1, move, stateSet, seen);
-            // check all slides
-            for (int i = 0; i < slides.size() - 1; i += 2) {
-                // perform slide
-                board.slide(slides.get(i), slides.get(i + 1));
-                move.add(slides.get(i));
-                move.add(slides.get(i + 1));
-                // recurse
-                getStateSetHelper(board, turn, numSlides - 1, move, stateSet, seen);
-                // undo slide
-                board.slide(slides.get(i + 1), slides.get(i));
-                move.pop();
-                move.pop();
-            }
-        }
+    /**
+     * Sample a random turn for the player to move without enumerating every next state. Callers
+     * must choose between exact and fast sampling, since there's no safe default for both uses
+     * 
+     * @param board Board to sample a turn from
+     * @param rand  Source of randomness
+     * @param exact Whether every distinct next state should be equally likely, as when picking
+     *              from getNextStates. If false, the turn is found much faster but is biased
+     *              towards some next states (see TurnSampler)
+     * @return Packed Move of the sampled turn
+     */
+    public static int sampleMove(Bitboard board, SplittableRandom rand, boolean exact) {
+        return sampler.get().sample(board, rand, exact);
     }
 }
@@ -0,0 +1,312 @@
+package main.java.util;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import main.java.board.Bitboard;
+import main.java.board.BitMasks;
+import main.java.board.Move;
+import main.java.board.MoveList;
+import main.java.board.State;
+
+/**
+ * Draws random turns without enumerating every next state. A turn is sampled by walking forward:
+ * at each slide level, either skip or make one of the available slides (chosen uniformly), then
+ * make one of the non-suicidal pushes (chosen uniformly). A walk that ends with no non-suicidal
+ * push is rejected and retried.
+ * 
+ * The walk is fast but not uniform over the distinct next states: states behind fewer choices are
+ * more likely, and so are states that several walks lead to (sliding A then B, or B then A, or a
+ * piece there and back). In exact mode both are corrected for by rejection. A walk is accepted with
+ * probability W / (bound * m), where W is the number of choices it passed through after the first
+ * level (the first level is the same for every walk), bound is an upper limit on W, and m is the
+ * number of walks that lead to the same next state. Every walk is then equally likely to be
+ * accepted, and every next state is equally likely once divided among its m walks, so exact mode
+ * samples the same distribution as picking uniformly from getNextStates. m is found by undoing the
+ * push in each way that could have produced the state and counting the slide sequences that lead
+ * to each resulting board.
+ * 
+ * A TurnSampler is not thread-safe, so use one per thread (see SuccessorUtils).
+ */
+public class TurnSampler {
+    /**
+     * Number of rejected walks after which the next state is picked from the full enumeration
+     * instead
+     */
+    private static final int MAX_TRIES = 1000;
+
+    private final MoveGenerator generator;
+    /**
+     * Working copy of the board, changed as the walk makes slides and pushes
+     */
+    private final Bitboard board = new Bitboard();
+    /**
+     * Slide actions at each level of the walk, indexed by number of slides remaining
+     */
+    private final MoveList[] slideLists;
+    /**
+     * Slide actions at each level of the walk counting, indexed by number of slides remaining
+     */
+    private final MoveList[] countLists;
+    private final MoveList pushes = new MoveList(16);
+    private final MoveList safePushes = new MoveList(16);
+
+    /**
+     * Initialize a TurnSampler
+     * 
+     * @param generator MoveGenerator used to find slide and push actions
+     */
+    public TurnSampler(MoveGenerator generator) {
+        this.generator = generator;
+        slideLists = new MoveList[GameUtils.NUM_SLIDES + 1];
+        countLists = new MoveList[GameUtils.NUM_SLIDES + 1];
+        for (int i = 1; i < slideLists.length; i++) {
+            slideLists[i] = new MoveList();
+            countLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * Sample a random turn for the player to move. The given board is not changed
+     * 
+     * @param start Board to sample a turn from
+     * @param rand  Source of randomness
+     * @param exact Whether to sample uniformly from the distinct next states
+     * @return Packed Move of the sampled turn
+     */
+    public int sample(Bitboard start, SplittableRandom rand, boolean exact) {
+        int turn = start.getTurn();
+        // most choices any level could offer: one slide per piece and empty position, plus a skip,
+        // and four pushes per square
+        int empty = Integer.bitCount(BitMasks.valid & ~start.getPieces());
+        double bound = 4 * Integer.bitCount(start.getSquares(turn));
+        for (int i = 1; i < GameUtils.NUM_SLIDES; i++) {
+            bound *= 1 + Integer.bitCount(start.getPieces(turn)) * empty;
+        }
+
+        int move, choices, choice, slide, push;
+        double weight;
+        for (int tries = 0; tries < MAX_TRIES; tries++) {
+            board.restoreState(start);
+            move = 0;
+            weight = 1;
+            for (int numSlides = GameUtils.NUM_SLIDES; numSlides > 0; numSlides--) {
+                MoveList slides = slideLists[numSlides];
+                generator.getSlideActions(board, turn, slides);
+                // the last choice is to skip the slide
+                choices = slides.size() + 1;
+                choice = rand.nextInt(choices);
+                if (numSlides < GameUtils.NUM_SLIDES)
+                    weight *= choices;
+                if (choice < slides.size()) {
+                    slide = slides.get(choice);
+                    board.makeSlide(Move.slideSrc(slide), Move.slideDst(slide));
+                    move = Move.withSlide(move, slide);
+                }
+            }
+
+            findSafePushes(turn);
+            if (safePushes.size() == 0)
+                continue;
+            push = safePushes.get(rand.nextInt(safePushes.size()));
+            move = Move.withPush(move, push);
+            if (!exact)
+                return move;
+
+            weight *= safePushes.size();
+            if (rand.nextDouble() * bound >= weight)
+                continue;
+            board.makePush(Move.pushSrc(push), Move.pushDirIdx(push));
+            if (rand.nextInt(countWalks(start, board)) == 0)
+                return move;
+        }
+
+        // couldn't find a turn by walking, so pick from all of them
+        Set<State> successors = generator.getSuccessors(start);
+        int chosenIdx = rand.nextInt(successors.size());
+        Iterator<State> it = successors.iterator();
+        for (int i = 0; i < chosenIdx; i++) {
+            it.next();
+        }
+        return it.next().getCode();
+    }
+
+    /**
+     * Find the push actions for the working board that don't push one of the player's own pieces
+     * off the board
+     * 
+     * @param turn Turn indicator
+     */
+    private void findSafePushes(int turn) {
+        generator.getPushActions(board, turn, pushes);
+        safePushes.clear();
+        int push;
+        for (int i = 0; i < pushes.size(); i++) {
+            push = pushes.get(i);
+            long undo = board.makePush(Move.pushSrc(push), Move.pushDirIdx(push));
+            if (BitboardUtils.checkWinner(board) != 1 - turn)
+                safePushes.add(push);
+            board.unmake(undo);
+        }
+    }
+
+    /**
+     * Count the walks from the start board that end in the given next state. Every push that could
+     * have produced the next state ends with the pusher on the anchor, so the push is undone from
+     * each of the four positions next to it, with each possible number of pieces pushed along
+     * 
+     * @param start Board the turn started from
+     * @param next  Next state reached
+     * @return Number of walks leading to the next state (at least 1)
+     */
+    private int countWalks(Bitboard start, Bitboard next) {
+        int turn = start.getTurn();
+        int anchor = next.getAnchor();
+        long circles = next.getPackedCircles();
+        long squares = next.getPackedSquares();
+        // piece of the opponent missing from the next state, if one was pushed off
+        int fallenIdx = -1;
+        if (BitboardUtils.checkWinner(next) == turn) {
+            fallenIdx = (1 - turn) * 2;
+            if (Integer.bitCount(start.getCircles(1 - turn)) == Integer
+                    .bitCount(next.getCircles(1 - turn)))
+                fallenIdx++;
+        }
+
+        int walks = 0;
+        int pusher, ray, moved, last;
+        long movedMask, prevCircles, prevSquares;
+        boolean fell;
+        for (int dirIdx = 0; dirIdx < 4; dirIdx++) {
+            // the pusher came from the position behind the anchor
+            pusher = (int) BitMasks.shift(anchor & 0xFFFFFFFFL, dirIdx ^ 1);
+            if ((pusher & BitMasks.valid) == 0 || (pusher & next.getPieces()) != 0)
+                continue;
+            ray = BitMasks.pushRays[dirIdx][BitMasks.idx(pusher)];
+            if (BitMasks.first(ray, dirIdx) != anchor)
+                // the shift wrapped around to another row
+                continue;
+            // the pusher and the pieces it pushed now fill the first positions of its ray
+            moved = 0;
+            while (moved != ray) {
+                last = BitMasks.first(ray & ~moved, dirIdx);
+                if ((last & next.getPieces()) == 0)
+                    break;
+                moved |= last;
+                // pieces can only be pushed off when the whole ray was full
+                fell = moved == ray && fallenIdx != -1;
+                if (fallenIdx != -1 && !fell)
+                    continue;
+                // otherwise the pusher had to push at least one piece along
+                if (!fell && moved == anchor)
+                    continue;
+                movedMask = (moved & 0xFFFFFFFFL) | ((long) moved << 32);
+                // shift them back a position to undo the push
+                prevCircles = (circles & ~movedMask)
+                        | BitMasks.shift(circles & movedMask, dirIdx ^ 1);
+                prevSquares = (squares & ~movedMask)
+                        | BitMasks.shift(squares & movedMask, dirIdx ^ 1);
+                if (fell) {
+                    long fallen = (last & 0xFFFFFFFFL) << ((fallenIdx >> 1) << 5);
+                    if ((fallenIdx & 1) == 0)
+                        prevCircles |= fallen;
+                    else
+                        prevSquares |= fallen;
+                }
+                if (pushesTo(new Bitboard(prevCircles, prevSquares, start.getAnchor()), pusher,
+                        dirIdx, next))
+                    walks += countSlides(start, turn, GameUtils.NUM_SLIDES, prevCircles,
+                            prevSquares);
+            }
+        }
+        // the walk that was sampled always counts
+        return Math.max(walks, 1);
+    }
+
+    /**
+     * Check whether a push on the given board produces the given next state
+     * 
+     * @param prev    Board before the push
+     * @param pusher  Position of the pushing piece
+     * @param dirIdx  Direction index of the push
+     * @param next    Next state to compare against
+     * @return true if the push is valid and produces the next state, else false
+     */
+    private boolean pushesTo(Bitboard prev, int pusher, int dirIdx, Bitboard next) {
+        if (!BitboardUtils.isValidPush(prev, pusher, dirIdx))
+            return false;
+        prev.makePush(pusher, dirIdx);
+        return prev.equals(next);
+    }
+
+    /**
+     * Count the sequences of slide choices (skips included) that turn the given board into the
+     * target pieces
+     * 
+     * @param from      Board to slide from, restored before returning
+     * @param turn      Turn indicator
+     * @param numSlides Number of slides remaining in turn
+     * @param circles   Packed circles of the target
+     * @param squares   Packed squares of the target
+     * @return Number of slide sequences
+     */
+    private int countSlides(Bitboard from, int turn, int numSlides, long circles, long squares) {
+        if (numSlides == 0)
+            return matches(from, circles, squares) ? 1 : 0;
+        if (numSlides == 1)
+            return (matches(from, circles, squares) ? 1 : 0)
+                    + (slidesTo(from, turn, circles, squares) ? 1 : 0);
+        // skip this slide
+        int count = countSlides(from, turn, numSlides - 1, circles, squares);
+        MoveList slides = countLists[numSlides];
+        generator.getSlideActions(from, turn, slides);
+        int slide;
+        for (int i = 0; i < slides.size(); i++) {
+            slide = slides.get(i);
+            long undo = from.makeSlide(Move.slideSrc(slide), Move.slideDst(slide));
+            count += countSlides(from, turn, numSlides - 1, circles, squares);
+            from.unmake(undo);
+        }
+        return count;
+    }
+
+    /**
+     * Check whether the board's pieces match the target pieces
+     * 
+     * @param from    Board to compare
+     * @param circles Packed circles of the target
+     * @param squares Packed squares of the target
+     * @return true if they match, else false
+     */
+    private boolean matches(Bitboard from, long circles, long squares) {
+        return from.getPackedCircles() == circles && from.getPackedSquares() == squares;
+    }
+
+    /**
+     * Check whether a single slide turns the board's pieces into the target pieces
+     * 
+     * @param from    Board to slide from
+     * @param turn    Turn indicator
+     * @param circles Packed circles of the target
+     * @param squares Packed squares of the target
+     * @return true if exactly one of the player's pieces differs and can slide to its target
+     *         position, else false
+     */
+    private boolean slidesTo(Bitboard from, int turn, long circles, long squares) {
+        long circleDiff = from.getPackedCircles() ^ circles;
+        long squareDiff = from.getPackedSquares() ^ squares;
+        if ((circleDiff == 0) == (squareDiff == 0))
+            return false;
+        long diff = circleDiff | squareDiff;
+        int shift = turn << 5;
+        int moved = (int) (diff >>> shift);
+        if (((long) moved & 0xFFFFFFFFL) << shift != diff || Integer.bitCount(moved) != 2)
+            return false;
+        int src = moved & from.getPieces(turn);
+        int dst = moved & ~src;
+        if (Integer.bitCount(src) != 1)
+            return false;
+        return (FloodFill.slideDests(src, BitMasks.valid & ~from.getPieces()) & dst) != 0;
+    }
+}
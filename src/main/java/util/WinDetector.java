@@ -0,0 +1,226 @@
+package main.java.util;
+
+import main.java.board.Bitboard;
+import main.java.board.BitMasks;
+import main.java.board.Move;
+import main.java.board.MoveList;
+
+/**
+ * Detects whether the player to move can push one of the opponent's pieces off the board this
+ * turn, without enumerating every next state.
+ * 
+ * A winning push needs a line of pieces running from the pusher all the way to an edge (or hole)
+ * that pieces can be pushed off: the pusher is one of the player's squares, every position in front
+ * of it is occupied, nothing in the line is anchored, and the piece at the end belongs to the
+ * opponent. The opponent's pieces don't move during the turn, so for each such line it's cheap to
+ * count how many of the player's pieces still have to slide into place. Slides are only searched
+ * while some line could still be completed with the slides remaining.
+ * 
+ * A WinDetector is not thread-safe, so use one per thread (see SuccessorUtils).
+ */
+public class WinDetector {
+    /**
+     * Returned by findWin when there is no winning move
+     */
+    public static final int NO_WIN = -1;
+    // more slides than a turn could ever have
+    private static final int UNREACHABLE = 100;
+
+    // every line that pieces can be pushed off the board along: position of the pusher, positions
+    // in front of it and direction index of the push
+    private static final int[] linePushers;
+    private static final int[] lineRays;
+    private static final int[] lineDirs;
+    /**
+     * Indices of the lines ending at each position, indexed by position [0, 31]
+     */
+    private static final int[][] linesByVictim = new int[32][];
+    static {
+        int numLines = 0;
+        int[] pushers = new int[128];
+        int[] rays = new int[128];
+        int[] dirs = new int[128];
+        int[] victimCounts = new int[32];
+        int posMask, ray;
+        for (int pos = 0; pos < 32; pos++) {
+            posMask = 1 << pos;
+            if ((posMask & BitMasks.valid) == 0)
+                continue;
+            for (int dirIdx = 0; dirIdx < 4; dirIdx++) {
+                ray = BitMasks.pushRays[dirIdx][pos];
+                if (ray == 0 || (BitMasks.railEnds[dirIdx] & posMask) != 0)
+                    continue;
+                pushers[numLines] = posMask;
+                rays[numLines] = ray;
+                dirs[numLines] = dirIdx;
+                victimCounts[BitMasks.idx(victim(ray, dirIdx))]++;
+                numLines++;
+            }
+        }
+        linePushers = new int[numLines];
+        lineRays = new int[numLines];
+        lineDirs = new int[numLines];
+        System.arraycopy(pushers, 0, linePushers, 0, numLines);
+        System.arraycopy(rays, 0, lineRays, 0, numLines);
+        System.arraycopy(dirs, 0, lineDirs, 0, numLines);
+        for (int pos = 0; pos < 32; pos++) {
+            linesByVictim[pos] = new int[victimCounts[pos]];
+            victimCounts[pos] = 0;
+        }
+        int victimPos;
+        for (int line = 0; line < numLines; line++) {
+            victimPos = BitMasks.idx(victim(lineRays[line], lineDirs[line]));
+            linesByVictim[victimPos][victimCounts[victimPos]++] = line;
+        }
+    }
+
+    private final MoveGenerator generator;
+    /**
+     * Slide actions at each level of the search, indexed by number of slides remaining
+     */
+    private final MoveList[] slideLists;
+
+    /**
+     * Initialize a WinDetector
+     * 
+     * @param generator MoveGenerator used to find slide actions
+     */
+    public WinDetector(MoveGenerator generator) {
+        this.generator = generator;
+        slideLists = new MoveList[GameUtils.NUM_SLIDES + 1];
+        for (int i = 1; i < slideLists.length; i++) {
+            slideLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * Get the position at the far end of a ray, where a piece gets pushed off
+     * 
+     * @param ray    Bit mask of the ray
+     * @param dirIdx Direction index of the ray
+     * @return Bit mask of the last position of the ray
+     */
+    private static int victim(int ray, int dirIdx) {
+        return BitMasks.first(ray, dirIdx ^ 1);
+    }
+
+    /**
+     * Find a move that wins this turn for the player to move. The board is changed during the
+     * search but restored before returning
+     * 
+     * @param board Board to analyze
+     * @return Packed Move that pushes an opponent's piece off the board, or NO_WIN if there is none
+     */
+    public int findWin(Bitboard board) {
+        return search(board, board.getTurn(), GameUtils.NUM_SLIDES, 0, -1);
+    }
+
+    /**
+     * Check whether the player to move can win this turn
+     * 
+     * @param board Board to analyze
+     * @return true if the player to move can push an opponent's piece off the board, else false
+     */
+    public boolean canWin(Bitboard board) {
+        return findWin(board) != NO_WIN;
+    }
+
+    /**
+     * Find the opponent's pieces that the player to move could push off the board this turn
+     * 
+     * @param board Board to analyze
+     * @return Bit mask of the threatened pieces
+     */
+    public int getThreatened(Bitboard board) {
+        int turn = board.getTurn();
+        int threatened = 0;
+        int victims = board.getPieces(1 - turn);
+        int victim;
+        while (victims != 0) {
+            victim = victims & ~(victims - 1);
+            victims ^= victim;
+            if (search(board, turn, GameUtils.NUM_SLIDES, 0, victim) != NO_WIN)
+                threatened |= victim;
+        }
+        return threatened;
+    }
+
+    /**
+     * Lower bound on the number of slides needed before the given line can be pushed to win. Every
+     * empty position in front of the pusher needs a piece slid into it, and the pusher's position
+     * needs one of the player's squares (after any circle there has slid out of the way)
+     * 
+     * @param board Board to analyze
+     * @param turn  Turn indicator
+     * @param line  Index of the line
+     * @return Lower bound on slides needed, or UNREACHABLE if the line can't be won this turn
+     */
+    private int slidesNeeded(Bitboard board, int turn, int line) {
+        int pusher = linePushers[line];
+        int ray = lineRays[line];
+        if ((ray & board.getAnchor()) != 0)
+            return UNREACHABLE;
+        int empty = Integer.bitCount(ray & ~board.getPieces());
+        if ((pusher & board.getSquares(turn)) != 0)
+            return empty;
+        if ((pusher & board.getPieces(1 - turn)) != 0)
+            return UNREACHABLE;
+        if ((pusher & board.getPieces(turn)) != 0)
+            // a circle has to slide out, and it can fill an empty position on its way
+            return empty == 0 ? 2 : empty + 1;
+        return empty + 1;
+    }
+
+    /**
+     * Search for a winning move with a variable number of sliding actions
+     * 
+     * @param board     Board to analyze
+     * @param turn      Turn indicator
+     * @param numSlides Number of slides remaining in turn
+     * @param move      Packed Move generated so far
+     * @param victims   Bit mask of the opponent's pieces to try to push off
+     * @return Packed winning Move, or NO_WIN if there is none
+     */
+    private int search(Bitboard board, int turn, int numSlides, int move, int victims) {
+        // positions of the lines that could be won with the slides remaining, and whether any of
+        // them has a slide to spare for moving other pieces out of the way
+        int lineMask = 0;
+        boolean spare = false;
+        int targets = board.getPieces(1 - turn) & victims;
+        int target, needed;
+        while (targets != 0) {
+            target = targets & ~(targets - 1);
+            targets ^= target;
+            for (int line : linesByVictim[BitMasks.idx(target)]) {
+                needed = slidesNeeded(board, turn, line);
+                if (needed == 0)
+                    return Move.withPush(move, Move.pushAction(linePushers[line], lineDirs[line]));
+                if (needed <= numSlides) {
+                    lineMask |= linePushers[line] | lineRays[line];
+                    if (needed < numSlides)
+                        spare = true;
+                }
+            }
+        }
+        if (lineMask == 0)
+            return NO_WIN;
+
+        // a slide that doesn't touch a line can only help by clearing a path for a later slide
+        MoveList slides = slideLists[numSlides];
+        generator.getSlideActions(board, turn, slides);
+        int slide, src, dst, result;
+        for (int i = 0; i < slides.size(); i++) {
+            slide = slides.get(i);
+            src = Move.slideSrc(slide);
+            dst = Move.slideDst(slide);
+            if (!spare && ((src | dst) & lineMask) == 0)
+                continue;
+            long undo = board.makeSlide(src, dst);
+            result = search(board, turn, numSlides - 1, Move.withSlide(move, slide), victims);
+            board.unmake(undo);
+            if (result != NO_WIN)
+                return result;
+        }
+        return NO_WIN;
+    }
+}